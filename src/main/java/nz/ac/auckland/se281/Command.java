@@ -6,8 +6,15 @@ package nz.ac.auckland.se281;
  * <p>You should not modify this class.
  */
 public enum Command {
-  OPEN_FILE(1, "Open the file <FILENAME>"),
+  OPEN_FILE(1, "Open the file <FILENAME> as the graph <FILENAME>, or as @<ALIAS> if given"),
   INFO(0, "Print information about the current loaded file"),
+  LOAD_STATUS(0, "Print how far the current file has got with loading"),
+  WATCH_FILE(0, "Watch the current file, and add edges appended to it to the graph"),
+  UNWATCH_FILE(0, "Stop watching the current file"),
+
+  LIST_GRAPHS(0, "List the open graphs and the memory each uses"),
+  USE_GRAPH(1, "Run commands on the open graph <ALIAS>, or start one command with @<ALIAS>"),
+  CLOSE_GRAPH(1, "Close the open graph <ALIAS>"),
 
   LIST_VERTICIES_EDGES(0, "List the set of vertices and edges"),
   LIST_ROOT_VERTICIES(0, "List the set of root vertices"),
@@ -18,12 +25,19 @@ public enum Command {
   CHECK_ANTISYMMETRY(0, "Check anti-symmetry of the graph"),
   CHECK_EQUIVALENCE(0, "Check equivalence of the graph"),
   COMPUTE_EQUIVALENCE(1, "Compute equivalence class for a vertex in loaded file <VERTEX>"),
+  SAME_EQUIVALENCE_CLASS(
+      2, "Check if two verticies <VERTEX> <VERTEX> are in the same equivalence class"),
 
   GRAPH_SEARCH_IBFS(
       0, "Perform a breadth-first search on the current loaded file, and display the BFS order"),
   GRAPH_SEARCH_IDFS(
       0, "Perform a depth-first search on the current loaded file, and display the DFS order"),
 
+  GRAPH_SEARCH_PBFS(
+      0,
+      "Perform a parallel breadth-first search on the current loaded file, and display the BFS"
+          + " order"),
+
   GRAPH_SEARCH_RBFS(
       0,
       "Perform a recursive breadth-first search on the current loaded file, and display the BFS"
@@ -33,6 +47,8 @@ public enum Command {
       "Perform a recursive depth-first search on the current loaded file, and display the DFS"
           + " order"),
 
+  CACHE_STATS(0, "Print the hit, miss and eviction counts of the cache of opened graphs"),
+
   HELP(0, "Print usage"),
   EXIT(0, "Exit the application");
 
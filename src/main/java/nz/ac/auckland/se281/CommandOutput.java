@@ -0,0 +1,212 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+/**
+ * The output of the command line interface, gathered in one reusable byte buffer that is only
+ * written to the underlying stream when it fills up or the output is flushed. Results are written
+ * an element at a time, so printing a long search order or listing never builds all of its text in
+ * memory, and the interface flushes once per command instead of once per line.
+ */
+public final class CommandOutput {
+  private static final int BUFFER_BYTES = 1 << 18;
+
+  private static final String NEW_LINE = System.lineSeparator();
+
+  private final OutputStream out;
+
+  private final boolean autoFlush;
+
+  private final Charset charset = Charset.defaultCharset();
+
+  private final byte[] buffer;
+
+  private int count;
+
+  /**
+   * Creates a new output that is only flushed when asked to.
+   *
+   * @param out The stream to write to.
+   */
+  public CommandOutput(final OutputStream out) {
+    this(out, false);
+  }
+
+  /**
+   * Creates a new output.
+   *
+   * @param out The stream to write to.
+   * @param autoFlush If the output is flushed at the end of every line, like a {@link
+   *     java.io.PrintStream} with automatic flushing.
+   */
+  public CommandOutput(final OutputStream out, final boolean autoFlush) {
+    this(out, autoFlush, BUFFER_BYTES);
+  }
+
+  /**
+   * Creates a new output with a buffer of the given size.
+   *
+   * @param out The stream to write to.
+   * @param autoFlush If the output is flushed at the end of every line.
+   * @param bufferBytes The size of the buffer, in bytes.
+   */
+  public CommandOutput(final OutputStream out, final boolean autoFlush, final int bufferBytes) {
+    this.out = out;
+    this.autoFlush = autoFlush;
+    this.buffer = new byte[bufferBytes];
+  }
+
+  /**
+   * Writes the given text.
+   *
+   * @param text The text to write.
+   * @return This output.
+   */
+  public CommandOutput print(final String text) {
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c >= 0x80) {
+        // Only text outside ASCII is encoded, the rest is copied a byte at a time
+        write(text.substring(i).getBytes(charset));
+        return this;
+      }
+      if (count == buffer.length) {
+        drain();
+      }
+      buffer[count++] = (byte) c;
+    }
+    return this;
+  }
+
+  /**
+   * Writes the string value of the given object.
+   *
+   * @param value The object to write.
+   * @return This output.
+   */
+  public CommandOutput print(final Object value) {
+    return print(String.valueOf(value));
+  }
+
+  /**
+   * Writes the given text and ends the line.
+   *
+   * @param text The text to write.
+   * @return This output.
+   */
+  public CommandOutput println(final String text) {
+    return print(text).println();
+  }
+
+  /**
+   * Ends the line.
+   *
+   * @return This output.
+   */
+  public CommandOutput println() {
+    print(NEW_LINE);
+    if (autoFlush) {
+      flush();
+    }
+    return this;
+  }
+
+  /**
+   * Writes the given elements on one line, formatted the same way as {@link
+   * java.util.AbstractCollection#toString()}, but an element at a time.
+   *
+   * @param elements The elements to write.
+   * @return This output.
+   */
+  public CommandOutput printList(final Iterable<?> elements) {
+    print("[");
+    boolean first = true;
+    for (final Object element : elements) {
+      if (!first) {
+        print(", ");
+      }
+      print(element);
+      first = false;
+    }
+    return println("]");
+  }
+
+  /**
+   * Writes the elements a search hands to its visitor on one line, formatted the same way as
+   * {@link #printList(Iterable)}, writing each element as soon as it is handed over.
+   *
+   * @param search The search, which hands every element to the given visitor in turn.
+   * @return This output.
+   */
+  public CommandOutput printVisited(final Consumer<Consumer<Object>> search) {
+    print("[");
+    final boolean[] first = {true};
+    search.accept(
+        element -> {
+          if (!first[0]) {
+            print(", ");
+          }
+          print(element);
+          first[0] = false;
+        });
+    return println("]");
+  }
+
+  /** Writes everything buffered so far to the stream, and flushes the stream. */
+  public void flush() {
+    drain();
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the given bytes, straight to the stream if they do not fit in the buffer.
+   *
+   * @param bytes The bytes to write.
+   */
+  void write(final byte[] bytes) {
+    write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Writes a range of the given bytes, straight to the stream if they do not fit in the buffer.
+   *
+   * @param bytes The bytes to write.
+   * @param offset The index of the first byte to write.
+   * @param length The number of bytes to write.
+   */
+  void write(final byte[] bytes, final int offset, final int length) {
+    if (length > buffer.length - count) {
+      drain();
+    }
+    if (length > buffer.length) {
+      writeToStream(bytes, offset, length);
+      return;
+    }
+    System.arraycopy(bytes, offset, buffer, count, length);
+    count += length;
+  }
+
+  /** Writes the buffer to the stream, without flushing the stream. */
+  private void drain() {
+    if (count > 0) {
+      writeToStream(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  private void writeToStream(final byte[] bytes, final int offset, final int length) {
+    try {
+      out.write(bytes, offset, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -1,17 +1,19 @@
 package nz.ac.auckland.se281;
 
-import com.paypal.digraph.parser.GraphEdge;
-import com.paypal.digraph.parser.GraphNode;
-import com.paypal.digraph.parser.GraphParser;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import nz.ac.auckland.se281.datastructures.Edge;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.loader.GraphCache;
+import nz.ac.auckland.se281.loader.GraphLoader;
+import nz.ac.auckland.se281.loader.GraphWatcher;
+import nz.ac.auckland.se281.loader.LoadProgress;
 
 /**
  * The calculator that reports properties of graphs to the user.
@@ -21,13 +23,23 @@ import nz.ac.auckland.se281.datastructures.Graph;
 public class GraphCalculator {
   private static final Path TESTCASES = Path.of("testcases");
 
+  private static final long ASYNC_MIN_BYTES = Long.getLong("graphcalc.async.minBytes", 1 << 20);
+
   private final Path file;
 
-  private final Collection<GraphNode> verticies;
+  private final LoadProgress progress;
+
+  private final long openedModified;
+
+  private final CompletableFuture<Graph<String>> loading;
+
+  private final boolean background;
+
+  private final CommandOutput out;
 
-  private final Collection<GraphEdge> edges;
+  private volatile GraphWatcher watcher;
 
-  private final Graph<String> graph;
+  private volatile Graph<String> watched;
 
   /**
    * Creates a new graph calculator.
@@ -36,84 +48,382 @@ public class GraphCalculator {
    * @throws FileNotFoundException If the file does not exist.
    */
   public GraphCalculator(final String filename) throws FileNotFoundException {
-    file = TESTCASES.resolve(filename);
+    this(filename, null);
+  }
 
-    final GraphParser parser = new GraphParser(new FileInputStream(file.toFile()));
+  /**
+   * Creates a new graph calculator, reusing the graph from the given cache if it has already been
+   * loaded.
+   *
+   * @param filename The name of the test case to read.
+   * @param graphs The cache of loaded graphs, or null to always load the file.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  public GraphCalculator(final String filename, final GraphCache graphs)
+      throws FileNotFoundException {
+    this(filename, graphs, null);
+  }
 
-    this.verticies = parser.getNodes().values();
-    this.edges = parser.getEdges().values();
+  /**
+   * Creates a new graph calculator. Files of at least {@code graphcalc.async.minBytes} bytes, 1 MiB
+   * unless the system property says otherwise, are loaded on the given executor so the
+   * calculator is returned straight away. Smaller files are loaded before the calculator is
+   * returned.
+   *
+   * @param filename The name of the test case to read.
+   * @param graphs The cache of loaded graphs, or null to always load the file.
+   * @param loader The executor to load large files on, or null to always load them straight away.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  public GraphCalculator(final String filename, final GraphCache graphs, final Executor loader)
+      throws FileNotFoundException {
+    this(filename, graphs, loader, new CommandOutput(System.out, true));
+  }
+
+  /**
+   * Creates a new graph calculator that prints to the given output, see {@link
+   * #GraphCalculator(String, GraphCache, Executor)}. The output is not flushed by the calculator.
+   * Names that lead outside the testcases folder, such as absolute paths, are not found.
+   *
+   * @param filename The name of the test case to read.
+   * @param graphs The cache of loaded graphs, or null to always load the file.
+   * @param loader The executor to load large files on, or null to always load them straight away.
+   * @param out The output to print to.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  public GraphCalculator(
+      final String filename,
+      final GraphCache graphs,
+      final Executor loader,
+      final CommandOutput out)
+      throws FileNotFoundException {
+    this.out = out;
+    file = TESTCASES.resolve(filename).normalize();
+    // Only files in the testcases folder are opened, so a name cannot reach the rest of the disk
+    if (Path.of(filename).isAbsolute() || !file.startsWith(TESTCASES) || file.equals(TESTCASES)) {
+      throw new FileNotFoundException(filename);
+    }
+    progress = new LoadProgress(file.toFile().length());
+    openedModified = file.toFile().lastModified();
 
-    final Set<String> verticies = new HashSet<>();
+    if (loader == null || progress.getTotalBytes() < ASYNC_MIN_BYTES) {
+      loading = CompletableFuture.completedFuture(load(graphs));
+      background = false;
+      return;
+    }
 
-    for (final GraphNode node : this.verticies) {
-      verticies.add(node.getId());
+    // Only a missing file is reported straight away, any other failure when the graph is needed
+    if (!file.toFile().isFile()) {
+      throw new FileNotFoundException(file.toString());
     }
+    background = true;
+    loading =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return load(graphs);
+              } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+              }
+            },
+            loader);
+  }
+
+  /**
+   * Creates a calculator for the same file and graph as the given calculator, that prints to
+   * another output.
+   *
+   * @param calculator The calculator to share the file and graph of.
+   * @param out The output to print to.
+   */
+  private GraphCalculator(final GraphCalculator calculator, final CommandOutput out) {
+    this.out = out;
+    file = calculator.file;
+    progress = calculator.progress;
+    openedModified = calculator.openedModified;
+    loading = calculator.loading;
+    background = calculator.background;
+    watcher = calculator.watcher;
+    watched = calculator.watched;
+  }
 
-    final Set<Edge<String>> edges = new HashSet<>();
+  /**
+   * Returns a calculator for the same graph that prints to the given output instead, so commands
+   * that only read the graph can run at the same time without mixing their output. It is not meant
+   * for starting or stopping a watch, which would not be seen by this calculator.
+   *
+   * @param out The output to print to.
+   * @return The calculator.
+   */
+  public synchronized GraphCalculator printingTo(final CommandOutput out) {
+    return new GraphCalculator(this, out);
+  }
 
-    for (final GraphEdge edge : this.edges) {
-      edges.add(new Edge<>(edge.getNode1().getId(), edge.getNode2().getId()));
+  /**
+   * Loads the graph, from the cache if there is one.
+   *
+   * @param graphs The cache of loaded graphs, or null to always load the file.
+   * @return The graph.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  private Graph<String> load(final GraphCache graphs) throws FileNotFoundException {
+    try {
+      return graphs == null ? GraphLoader.load(file, progress) : graphs.load(file, progress);
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
+  }
 
-    graph = new Graph<>(verticies, edges);
+  /**
+   * Returns if the graph is being loaded in the background, rather than loaded already.
+   *
+   * @return If the graph is loaded in the background.
+   */
+  public boolean isLoadingInBackground() {
+    return background;
+  }
+
+  /**
+   * Returns if the graph is still being loaded.
+   *
+   * @return If the load has not finished.
+   */
+  public boolean isLoading() {
+    return !loading.isDone();
+  }
+
+  /**
+   * Returns if the file is being watched for appended edges.
+   *
+   * @return If the file is being watched.
+   */
+  public boolean isWatching() {
+    return watcher != null;
+  }
+
+  /**
+   * Returns the name of the loaded file, relative to the test cases folder.
+   *
+   * @return The file name.
+   */
+  public String getFileName() {
+    return TESTCASES.relativize(file).toString();
+  }
+
+  /**
+   * Waits until the graph is loaded.
+   *
+   * @return If the graph loaded, rather than failed to load.
+   */
+  public boolean awaitGraph() {
+    try {
+      loading.join();
+      return true;
+    } catch (CompletionException | CancellationException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns why the graph failed to load.
+   *
+   * @return The reason, or null if the graph has not failed to load.
+   */
+  public String getLoadError() {
+    if (!loading.isCompletedExceptionally()) {
+      return null;
+    }
+    try {
+      loading.join();
+      return null;
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        cause = cause.getCause();
+      }
+      return String.valueOf(cause);
+    } catch (CancellationException e) {
+      return String.valueOf(e);
+    }
+  }
+
+  /**
+   * Returns the loaded graph, waiting for it if it is still loading. A watched file hands back its
+   * graph as of the last change.
+   *
+   * @return The graph.
+   */
+  private Graph<String> graph() {
+    final GraphWatcher current = watcher;
+    if (current != null) {
+      return current.getGraph();
+    }
+    final Graph<String> last = watched;
+    return last != null ? last : loading.join();
+  }
+
+  /**
+   * Starts watching the file, so edges appended to it are added to the graph. The graph must have
+   * loaded.
+   *
+   * @return If the file was not already being watched.
+   * @throws IOException If the file cannot be watched.
+   */
+  public synchronized boolean startWatching() throws IOException {
+    if (watcher != null) {
+      return false;
+    }
+    // The file is compared with how it was when opened, so any change since is caught up with
+    watcher = new GraphWatcher(file, graph(), progress.getTotalBytes(), openedModified);
+    return true;
+  }
+
+  /**
+   * Stops watching the file, keeping the graph as of the last change.
+   *
+   * @return The watcher that was stopped, or null if the file was not being watched.
+   */
+  public synchronized GraphWatcher stopWatching() {
+    final GraphWatcher current = watcher;
+    if (current == null) {
+      return null;
+    }
+    try {
+      current.close();
+    } catch (IOException e) {
+      // The watch service is dropped either way
+    }
+    watched = current.getGraph();
+    watcher = null;
+    return current;
   }
 
   /** Prints the filename of the test case that is loaded. */
   public void printInfo() {
-    MessageCli.INFO.printMessage(TESTCASES.relativize(file).toString());
+    MessageCli.INFO.printMessage(out, getFileName());
   }
 
-  /** Prints the set of verticies and edges in the graph. */
-  public void printVerticiesEdges() {
-    final StringBuilder sb = new StringBuilder("Verticies:").append(System.lineSeparator());
+  /** Prints how far the graph has got with loading, without waiting for it. */
+  public void printLoadStatus() {
+    final String state;
+    if (!loading.isDone()) {
+      state = "Loading";
+    } else if (loading.isCompletedExceptionally()) {
+      state = "Failed to load";
+    } else {
+      state = "Loaded";
+    }
+
+    MessageCli.LOAD_STATUS.printMessage(
+        out,
+        state,
+        getFileName(),
+        String.valueOf(progress.getBytesRead()),
+        String.valueOf(progress.getTotalBytes()),
+        String.valueOf(progress.getEdgesIngested()));
+  }
 
-    // Vertically print each vertex.
-    for (final GraphNode node : verticies) {
-      sb.append("\t").append(node.getId()).append(System.lineSeparator());
+  /** Starts watching the file for appended edges, and prints whether it is being watched. */
+  public void printWatchFile() {
+    try {
+      if (startWatching()) {
+        MessageCli.WATCHING_FILE.printMessage(out, getFileName());
+      } else {
+        MessageCli.ALREADY_WATCHING_FILE.printMessage(out, getFileName());
+      }
+    } catch (IOException e) {
+      MessageCli.WATCH_FAILED.printMessage(out, getFileName(), String.valueOf(e));
     }
+  }
 
-    sb.append(System.lineSeparator()).append("Edges:").append(System.lineSeparator());
+  /** Stops watching the file, and prints how the graph was kept up to date while it was. */
+  public void printUnwatchFile() {
+    final GraphWatcher stopped = stopWatching();
+    if (stopped == null) {
+      MessageCli.NOT_WATCHING_FILE.printMessage(out, getFileName());
+      return;
+    }
 
-    // Vertically print each edge between verticies.
-    for (final GraphEdge edge : edges) {
-      sb.append("\t")
-          .append(edge.getNode1().getId())
-          .append(" -> ")
-          .append(edge.getNode2().getId())
-          .append(System.lineSeparator());
+    MessageCli.UNWATCHED_FILE.printMessage(
+        out,
+        getFileName(),
+        String.valueOf(stopped.getAppends()),
+        String.valueOf(stopped.getReloads()));
+  }
+
+  /**
+   * Prints the size of the graph and about how much memory it uses, without waiting for it to load.
+   *
+   * @param name The name of the graph in the workspace, marked if it is the current graph.
+   */
+  public void printSummary(final String name) {
+    if (!loading.isDone()) {
+      MessageCli.WORKSPACE_GRAPH_LOADING.printMessage(out, name, getFileName());
+      return;
+    }
+    if (loading.isCompletedExceptionally()) {
+      MessageCli.WORKSPACE_GRAPH_FAILED.printMessage(out, name, getFileName());
+      return;
+    }
+
+    final Graph<String> graph = graph();
+    MessageCli.WORKSPACE_GRAPH.printMessage(
+        out,
+        name,
+        getFileName(),
+        String.valueOf(graph.getVerticies().size()),
+        String.valueOf(graph.getEdges().size()),
+        String.valueOf(graph.estimateMemoryBytes()));
+  }
+
+  /** Prints the set of verticies and edges in the graph. */
+  public void printVerticiesEdges() {
+    final Graph<String> graph = graph();
+    out.println("Verticies:");
+
+    // Vertically print each vertex, sorted by label.
+    final Iterable<String> verticies = graph::labelOrderIterator;
+    for (final String vertex : verticies) {
+      out.print("\t").println(vertex);
     }
 
-    System.out.print(sb.toString());
+    out.println().println("Edges:");
+
+    // Vertically print each edge between verticies, sorted by source and then destination.
+    graph.forEachEdgeInLabelOrder(
+        (source, destination) -> out.print("\t").print(source).print(" -> ").println(destination));
   }
 
   /** Prints the set of verticies in the graph that are root verticies. */
   public void printRoots() {
-    System.out.println(graph.getRoots());
+    out.printList(graph().getRoots());
   }
 
   /** Prints if the set of verticies in the graph exhibit the reflexivity property. */
   public void printReflexitivity() {
-    MessageCli.GRAPH_REFLEXIVE.printMessage(prefixNot(graph.isReflexive()));
+    MessageCli.GRAPH_REFLEXIVE.printMessage(out, prefixNot(graph().isReflexive()));
   }
 
   /** Prints if the set of edges in the graph exhibit the symmetric property. */
   public void printSymmetry() {
-    MessageCli.GRAPH_SYMMETRIC.printMessage(prefixNot(graph.isSymmetric()));
+    MessageCli.GRAPH_SYMMETRIC.printMessage(out, prefixNot(graph().isSymmetric()));
   }
 
   /** Prints if the set of edges in the graph exhibit transitivity. */
   public void printTransitivity() {
-    MessageCli.GRAPH_TRANSITIVE.printMessage(prefixNot(graph.isTransitive()));
+    MessageCli.GRAPH_TRANSITIVE.printMessage(out, prefixNot(graph().isTransitive()));
   }
 
   /** Prints if the set of edges in the graph exhibit anti-symmetry. */
   public void printAntiSymmetry() {
-    MessageCli.GRAPH_ANTI_SYMMETRIC.printMessage(prefixNot(graph.isAntiSymmetric()));
+    MessageCli.GRAPH_ANTI_SYMMETRIC.printMessage(out, prefixNot(graph().isAntiSymmetric()));
   }
 
   /** Prints if the entire graph is considered an equivalence relation. */
   public void printEquivalence() {
-    MessageCli.GRAPH_EQUIVALENCE.printMessage(prefixNot(graph.isEquivalence()));
+    MessageCli.GRAPH_EQUIVALENCE.printMessage(out, prefixNot(graph().isEquivalence()));
   }
 
   /**
@@ -122,29 +432,67 @@ public class GraphCalculator {
    * @param vertex The vertex to compute the equivalence class of.
    */
   public void printEquivalenceClass(final String vertex) {
-    final Object[] equivalenceClass = graph.getEquivalenceClass(vertex).toArray();
+    final Object[] equivalenceClass = graph().getEquivalenceClass(vertex).toArray();
     Arrays.sort(equivalenceClass);
-    System.out.println(Arrays.toString(equivalenceClass));
+    out.printList(Arrays.asList(equivalenceClass));
+  }
+
+  /**
+   * Prints if the two given verticies are in the same equivalence class.
+   *
+   * @param first The first vertex.
+   * @param second The second vertex.
+   */
+  public void printSameEquivalenceClass(final String first, final String second) {
+    if (!graph().isEquivalence()) {
+      MessageCli.GRAPH_EQUIVALENCE.printMessage(out, prefixNot(false));
+      return;
+    }
+
+    final boolean sameClass = graph().isInSameEquivalenceClass(first, second);
+    MessageCli.SAME_EQUIVALENCE_CLASS.printMessage(out, first, second, prefixNot(sameClass));
   }
 
-  /** Prints the search order of an iterative breadth first search. */
+  /**
+   * Prints the search order of an iterative breadth first search. Each vertex is printed as soon as
+   * the search reaches it, instead of after the whole search.
+   */
   public void printIterativeBreadthFirstSearch() {
-    System.out.println(Arrays.toString(graph.iterativeBreadthFirstSearch().toArray()));
+    final Iterable<String> order = graph()::breadthFirstIterator;
+    out.printList(order);
   }
 
-  /** Prints the search order of an iterative depth first search. */
+  /**
+   * Prints the search order of an iterative depth first search. Each vertex is printed as soon as
+   * the search reaches it, instead of after the whole search.
+   */
   public void printDepthFirstSearch() {
-    System.out.println(Arrays.toString(graph.iterativeDepthFirstSearch().toArray()));
+    final Iterable<String> order = graph()::depthFirstIterator;
+    out.printList(order);
   }
 
-  /** Prints the search order of a recursive breadth first search. */
+  /**
+   * Prints the search order of a parallel breadth first search. Each vertex is printed as it is
+   * handed over, instead of after a list of the whole search order has been built.
+   */
+  public void printParallelBreadthFirstSearch() {
+    out.printVisited(graph()::parallelBreadthFirstSearch);
+  }
+
+  /**
+   * Prints the search order of a recursive breadth first search. Each vertex is printed as soon as
+   * the search reaches it, instead of after the whole search.
+   */
   public void printRecursiveBreadthFirstSearch() {
-    System.out.println(Arrays.toString(graph.recursiveBreadthFirstSearch().toArray()));
+    out.printVisited(graph()::recursiveBreadthFirstSearch);
   }
 
-  /** Prints the search order of a recursive depth first search. */
+  /**
+   * Prints the search order of a recursive depth first search. Each vertex is printed as soon as
+   * the search reaches it, instead of after the whole search.
+   */
   public void printRecursiveDepthFirstSearch() {
-    System.out.println(Arrays.toString(graph.recursiveDepthFirstSearch().toArray()));
+    out.printVisited(graph()::recursiveDepthFirstSearch);
   }
 
   /**
@@ -0,0 +1,203 @@
+package nz.ac.auckland.se281;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import nz.ac.auckland.se281.loader.GraphCache;
+
+/**
+ * A server that runs a session of the graph calculator command line interface for every client
+ * that connects, speaking the same commands and printing the same output as the interface on the
+ * terminal. The sessions share one cache of loaded graphs, so a file opened by many clients is only
+ * loaded once, and every session reads the same unchanging graph.
+ *
+ * <p>The server listens on a TCP port of the loopback address, or on a Unix domain socket. Each
+ * session runs on its own virtual thread when the Java runtime has them, and on its own daemon
+ * thread otherwise. A session ends when its client sends the exit command or disconnects.
+ */
+public final class GraphServer implements Closeable {
+  /** The address listened on when none is given, a TCP port of the loopback address. */
+  public static final String DEFAULT_ADDRESS = "7281";
+
+  private static final String UNIX_PREFIX = "unix:";
+
+  /**
+   * Parses an address to listen on, either {@code unix:} followed by the path of a Unix domain
+   * socket, or a TCP port of the loopback address, optionally preceded by a loopback host, such as
+   * {@code localhost} or {@code 127.0.0.1}, and a colon.
+   *
+   * @param address The address to parse.
+   * @return The socket address.
+   * @throws IllegalArgumentException If the port is not a number from 0 to 65535, or the host is
+   *     not a loopback address.
+   */
+  public static SocketAddress parseAddress(final String address) {
+    if (address.startsWith(UNIX_PREFIX)) {
+      return UnixDomainSocketAddress.of(address.substring(UNIX_PREFIX.length()));
+    }
+
+    final int colon = address.lastIndexOf(':');
+    final int port;
+    try {
+      port = Integer.parseInt(address.substring(colon + 1));
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("not a port or a unix socket: " + address);
+    }
+    if (colon < 0) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+    final InetSocketAddress host = new InetSocketAddress(address.substring(0, colon), port);
+    // Sessions can open any test case, so they are only served to clients on this machine
+    if (host.isUnresolved() || !host.getAddress().isLoopbackAddress()) {
+      throw new IllegalArgumentException("not a loopback address: " + address);
+    }
+    return host;
+  }
+
+  /**
+   * Creates the executor that runs the sessions, with a virtual thread for every session if the
+   * Java runtime has them.
+   *
+   * @return The executor.
+   */
+  private static ExecutorService newSessionExecutor() {
+    try {
+      // Virtual threads are only in Java 21 and later, and this project is built for Java 17
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(
+          runnable -> {
+            final Thread thread = new Thread(runnable, "graph-session");
+            thread.setDaemon(true);
+            return thread;
+          });
+    }
+  }
+
+  private final ServerSocketChannel channel;
+
+  private final SocketAddress address;
+
+  private final GraphCache graphs;
+
+  private final ExecutorService sessions = newSessionExecutor();
+
+  private final AtomicLong sessionCount = new AtomicLong();
+
+  /**
+   * Creates a server listening on the given address, with a cache of its own.
+   *
+   * @param address The address to listen on, see {@link #parseAddress}.
+   * @throws IOException If the address cannot be listened on.
+   */
+  public GraphServer(final SocketAddress address) throws IOException {
+    this(address, new GraphCache());
+  }
+
+  /**
+   * Creates a server listening on the given address.
+   *
+   * @param address The address to listen on, see {@link #parseAddress}.
+   * @param graphs The cache of loaded graphs shared by every session.
+   * @throws IOException If the address cannot be listened on.
+   */
+  public GraphServer(final SocketAddress address, final GraphCache graphs) throws IOException {
+    channel =
+        address instanceof UnixDomainSocketAddress
+            ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+            : ServerSocketChannel.open();
+    try {
+      channel.bind(address);
+    } catch (final IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.address = channel.getLocalAddress();
+    this.graphs = graphs;
+  }
+
+  /**
+   * Returns the address the server is listening on, with the port chosen if it was given as 0.
+   *
+   * @return The address.
+   */
+  public SocketAddress getAddress() {
+    return address;
+  }
+
+  /**
+   * Returns the number of sessions started so far.
+   *
+   * @return The session count.
+   */
+  public long getSessionCount() {
+    return sessionCount.get();
+  }
+
+  /**
+   * Accepts clients until the server is closed, starting a session for each of them.
+   *
+   * @throws IOException If a client cannot be accepted.
+   */
+  public void serve() throws IOException {
+    while (true) {
+      final SocketChannel client;
+      try {
+        client = channel.accept();
+      } catch (final ClosedChannelException e) {
+        // The server has been closed
+        return;
+      }
+      sessionCount.incrementAndGet();
+      sessions.execute(() -> runSession(client));
+    }
+  }
+
+  /**
+   * Runs the command line interface for a client until it exits or disconnects.
+   *
+   * @param client The connection to the client.
+   */
+  private void runSession(final SocketChannel client) {
+    try (client) {
+      final InputStream in = Channels.newInputStream(client);
+      final OutputStream out = Channels.newOutputStream(client);
+      new Main(new Scanner(in), out, graphs).start();
+    } catch (final NoSuchElementException e) {
+      // The client disconnected without the exit command
+    } catch (final IOException | RuntimeException e) {
+      // A failed session only ends its own connection, the other sessions carry on
+    }
+  }
+
+  /** Stops accepting clients, and removes the socket file of a Unix domain socket. */
+  @Override
+  public void close() {
+    try {
+      channel.close();
+      if (address instanceof UnixDomainSocketAddress) {
+        Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+      }
+    } catch (final IOException e) {
+      // The server is stopping either way
+    }
+  }
+}
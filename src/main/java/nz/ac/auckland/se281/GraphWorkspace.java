@@ -0,0 +1,255 @@
+package nz.ac.auckland.se281;
+
+import java.io.FileNotFoundException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The graphs open in the command line interface, each named by an alias. One of them is the
+ * current graph, which commands run on unless they name another. Every graph is kept with the
+ * indices and properties it has computed, so switching between graphs does not load them again.
+ *
+ * <p>The current graph, graphs still loading and watched graphs are always held on to. Any other
+ * graph is idle and only softly held, so it is released if memory runs short, and is opened again,
+ * through the cache of loaded graphs, the next time it is used. The cache only holds graphs softly
+ * as well, so it does not keep an idle graph from being released.
+ */
+public final class GraphWorkspace {
+  /** Opens a file again after its graph was released. */
+  @FunctionalInterface
+  public interface Opener {
+    /**
+     * Opens the given file.
+     *
+     * @param filename The name of the test case to read.
+     * @return The calculator of the file.
+     * @throws FileNotFoundException If the file no longer exists.
+     */
+    GraphCalculator open(String filename) throws FileNotFoundException;
+  }
+
+  /** A graph of the workspace, and the file it was opened from. */
+  private static final class Entry {
+    private final String filename;
+
+    private final Reference<GraphCalculator> calculator;
+
+    private GraphCalculator pinned;
+
+    private Entry(
+        final String filename,
+        final GraphCalculator calculator,
+        final Reference<GraphCalculator> reference) {
+      this.filename = filename;
+      this.calculator = reference;
+      this.pinned = calculator;
+    }
+
+    private GraphCalculator get() {
+      return pinned != null ? pinned : calculator.get();
+    }
+  }
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  private final Opener opener;
+
+  private final Function<GraphCalculator, Reference<GraphCalculator>> holder;
+
+  private String current;
+
+  /**
+   * Creates an empty workspace.
+   *
+   * @param opener How to open a file again after its graph was released.
+   */
+  public GraphWorkspace(final Opener opener) {
+    this(opener, SoftReference::new);
+  }
+
+  /**
+   * Creates an empty workspace that holds idle graphs through the given references, so a test can
+   * release them without running short of memory.
+   *
+   * @param opener How to open a file again after its graph was released.
+   * @param holder Makes the reference an idle graph is held through.
+   */
+  GraphWorkspace(
+      final Opener opener, final Function<GraphCalculator, Reference<GraphCalculator>> holder) {
+    this.opener = opener;
+    this.holder = holder;
+  }
+
+  /**
+   * Adds a graph under the given alias, and makes it the current graph.
+   *
+   * @param alias The alias of the graph.
+   * @param filename The name of the file the graph was opened from.
+   * @param calculator The calculator of the graph.
+   * @return The calculator the alias named before, or null if it was not in use or was released.
+   */
+  public GraphCalculator put(
+      final String alias, final String filename, final GraphCalculator calculator) {
+    final Entry previous =
+        entries.put(alias, new Entry(filename, calculator, holder.apply(calculator)));
+    current = alias;
+    releaseIdle();
+    return previous != null ? previous.get() : null;
+  }
+
+  /**
+   * Returns the graph with the given alias, opening its file again if the graph was released.
+   *
+   * @param alias The alias of the graph.
+   * @return The calculator of the graph, or null if there is no graph with the alias, or its file
+   *     was released and can no longer be opened.
+   */
+  public GraphCalculator get(final String alias) {
+    final Entry entry = entries.get(alias);
+    if (entry == null) {
+      return null;
+    }
+
+    GraphCalculator calculator = entry.get();
+    if (calculator == null) {
+      try {
+        calculator = opener.open(entry.filename);
+      } catch (final FileNotFoundException e) {
+        remove(alias);
+        return null;
+      }
+      entries.put(alias, new Entry(entry.filename, calculator, holder.apply(calculator)));
+    }
+    releaseIdle();
+    return calculator;
+  }
+
+  /**
+   * Returns the current graph, see {@link #get(String)}.
+   *
+   * @return The calculator of the current graph, or null if there is none.
+   */
+  public GraphCalculator getCurrent() {
+    return current != null ? get(current) : null;
+  }
+
+  /**
+   * Returns the alias of the current graph.
+   *
+   * @return The alias, or null if there is no current graph.
+   */
+  public String getCurrentAlias() {
+    return current;
+  }
+
+  /**
+   * Makes the graph with the given alias the current graph.
+   *
+   * @param alias The alias of the graph.
+   * @return The calculator of the graph, or null if there is no graph with the alias.
+   */
+  public GraphCalculator use(final String alias) {
+    if (!entries.containsKey(alias)) {
+      return null;
+    }
+    final String previous = current;
+    current = alias;
+    final GraphCalculator calculator = get(alias);
+    if (calculator == null) {
+      current = previous;
+    }
+    return calculator;
+  }
+
+  /**
+   * Removes the graph with the given alias. If it was the current graph, there is no current graph
+   * until another is opened or used.
+   *
+   * @param alias The alias of the graph.
+   * @return If there was a graph with the alias.
+   */
+  public boolean remove(final String alias) {
+    final Entry entry = entries.remove(alias);
+    if (entry == null) {
+      return false;
+    }
+    if (alias.equals(current)) {
+      current = null;
+    }
+    final GraphCalculator calculator = entry.get();
+    if (calculator != null) {
+      calculator.stopWatching();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the aliases of the graphs, in the order they were first opened.
+   *
+   * @return The aliases.
+   */
+  public List<String> getAliases() {
+    return new ArrayList<>(entries.keySet());
+  }
+
+  /**
+   * Returns the name of the file the graph with the given alias was opened from.
+   *
+   * @param alias The alias of the graph.
+   * @return The file name, or null if there is no graph with the alias.
+   */
+  public String getFileName(final String alias) {
+    final Entry entry = entries.get(alias);
+    return entry != null ? entry.filename : null;
+  }
+
+  /**
+   * Returns the graph with the given alias if it is still held, without opening its file again.
+   *
+   * @param alias The alias of the graph.
+   * @return The calculator of the graph, or null if there is no graph with the alias or it was
+   *     released.
+   */
+  public GraphCalculator peek(final String alias) {
+    final Entry entry = entries.get(alias);
+    return entry != null ? entry.get() : null;
+  }
+
+  /**
+   * Returns if there are no graphs in the workspace.
+   *
+   * @return If the workspace is empty.
+   */
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /** Stops watching the file of every graph. */
+  public void stopWatching() {
+    for (final Entry entry : entries.values()) {
+      // A watched graph is always held, so a released graph has nothing to stop
+      if (entry.pinned != null) {
+        entry.pinned.stopWatching();
+      }
+    }
+  }
+
+  /** Stops holding on to idle graphs, so they can be released if memory runs short. */
+  private void releaseIdle() {
+    for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+      final Entry graph = entry.getValue();
+      if (entry.getKey().equals(current)) {
+        graph.pinned = graph.get();
+      } else if (graph.pinned != null
+          && !graph.pinned.isWatching()
+          && !graph.pinned.isLoading()) {
+        graph.pinned = null;
+      }
+    }
+  }
+}
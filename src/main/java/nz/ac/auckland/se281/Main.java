@@ -1,7 +1,27 @@
 package nz.ac.auckland.se281;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nz.ac.auckland.se281.loader.GraphCache;
 
 /**
  * The entry point of the graph calculator command line interface.
@@ -11,8 +31,137 @@ import java.util.Scanner;
 public class Main {
   private static final String COMMAND_PREFIX = "graph-calculator> ";
 
+  private static final String BATCH_OPTION = "--batch";
+
+  private static final String SERVER_OPTION = "--server";
+
+  private static final String ALIAS_PREFIX = "@";
+
+  private static final String STANDARD_INPUT = "-";
+
+  /**
+   * Run the command line interface. With the {@code --batch} option, the commands of the script
+   * named by the next argument, or of the standard input if there is no script or it is {@code -},
+   * are run without prompts, see {@link #runBatch}. With the {@code --server} option, the interface
+   * is served to clients connecting to the address given by the next argument, see {@link
+   * GraphServer}.
+   *
+   * @param args The command line arguments.
+   */
   public static void main(final String[] args) {
-    new Main(new Scanner(System.in)).start();
+    // Write straight to the standard output file, since the output is buffered already
+    final OutputStream out = new FileOutputStream(FileDescriptor.out);
+
+    if (args.length > 0 && args[0].equals(SERVER_OPTION)) {
+      serve(args.length > 1 ? args[1] : GraphServer.DEFAULT_ADDRESS, out);
+      return;
+    }
+    if (args.length == 0 || !args[0].equals(BATCH_OPTION)) {
+      new Main(new Scanner(System.in), out).start();
+      return;
+    }
+
+    final String script = args.length > 1 ? args[1] : STANDARD_INPUT;
+    final OutputStream report = new FileOutputStream(FileDescriptor.err);
+    try (BufferedReader reader =
+        script.equals(STANDARD_INPUT)
+            ? new BufferedReader(new InputStreamReader(System.in))
+            : Files.newBufferedReader(Path.of(script))) {
+      runBatch(reader, out, report);
+    } catch (IOException e) {
+      final CommandOutput error = new CommandOutput(report);
+      MessageCli.SCRIPT_NOT_READ.printMessage(error, script, String.valueOf(e.getMessage()));
+      error.flush();
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Serve the command line interface to every client that connects to the given address, until the
+   * program is stopped.
+   *
+   * @param address The address to listen on, see {@link GraphServer#parseAddress}.
+   * @param out The stream to report the address being listened on to.
+   */
+  private static void serve(final String address, final OutputStream out) {
+    final CommandOutput status = new CommandOutput(out, true);
+    try (GraphServer server = new GraphServer(GraphServer.parseAddress(address))) {
+      // The server is closed when the program is stopped, so a socket file is not left behind
+      Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+      MessageCli.SERVER_LISTENING.printMessage(status, String.valueOf(server.getAddress()));
+      server.serve();
+    } catch (IOException | IllegalArgumentException e) {
+      MessageCli.SERVER_FAILED.printMessage(status, address, String.valueOf(e.getMessage()));
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Run every command of a script, one command per line, without the help menu or prompts. The
+   * script ends at its last line or at the exit command. The output of the commands is only written
+   * when the buffer fills up or the script ends, and then the time each command took and the total
+   * time are written to the report.
+   *
+   * <p>Commands that only read the graph of the open file, such as the checks and searches, run at
+   * the same time as the read-only commands next to them. Any other command, such as opening a
+   * file, waits for the commands before it and holds back the commands after it. The output is
+   * still in the order of the script.
+   *
+   * @param script The commands to run.
+   * @param out The stream to write the output of the commands to.
+   * @param report The stream to write the command times to.
+   * @throws IOException If the script cannot be read.
+   */
+  public static void runBatch(
+      final BufferedReader script, final OutputStream out, final OutputStream report)
+      throws IOException {
+    final Main main = new Main(null, out);
+    final CommandOutput times = new CommandOutput(report);
+    final long start = System.nanoTime();
+    int commands = 0;
+
+    try {
+      final List<ReadOnlyCommand> readOnly = new ArrayList<>();
+      String line;
+      boolean more = true;
+      while (more && (line = script.readLine()) != null) {
+        commands++;
+        final ReadOnlyCommand command = main.findReadOnlyCommand(line);
+        if (command != null) {
+          readOnly.add(command);
+          continue;
+        }
+
+        // Any other command waits for the read-only commands before it
+        main.processConcurrently(readOnly, times);
+        readOnly.clear();
+        final long commandStart = System.nanoTime();
+        more = main.processCommand(line);
+        MessageCli.BATCH_COMMAND_TIME.printMessage(
+            times, formatMillis(System.nanoTime() - commandStart), line.trim());
+      }
+      main.processConcurrently(readOnly, times);
+
+      // A script without the exit command still stops watching the open files
+      if (more) {
+        main.workspace.stopWatching();
+      }
+    } finally {
+      main.out.flush();
+      MessageCli.BATCH_TOTAL_TIME.printMessage(
+          times, String.valueOf(commands), formatMillis(System.nanoTime() - start));
+      times.flush();
+    }
+  }
+
+  /**
+   * Format a duration in milliseconds, to the nearest microsecond.
+   *
+   * @param nanos The duration in nanoseconds.
+   * @return The formatted duration.
+   */
+  private static String formatMillis(final long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
   }
 
   /**
@@ -44,7 +193,33 @@ public class Main {
 
   private final Scanner scanner;
 
-  private GraphCalculator calculator;
+  private final CommandOutput out;
+
+  private final GraphCache graphs;
+
+  // Loads run on daemon threads, so a load still running does not keep the program alive. A pool
+  // of platform threads stands in for a virtual thread per load, as this project targets Java 17.
+  // Every session loads on the same pool, whose idle threads end by themselves
+  private static final ExecutorService loaders =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            final Thread thread = new Thread(runnable, "graph-loader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Read-only commands of a script run on these, as many at a time as there are processors. The
+  // pool is shared by every session, such as every client of the server, so it is never shut down
+  private static final ExecutorService workers =
+      Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          runnable -> {
+            final Thread thread = new Thread(runnable, "graph-command");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final GraphWorkspace workspace;
 
   /**
    * Create a new command line interface.
@@ -52,24 +227,59 @@ public class Main {
    * @param scanner The scanner to read user input from.
    */
   public Main(final Scanner scanner) {
+    this(scanner, System.out);
+  }
+
+  /**
+   * Create a new command line interface that writes to the given stream. The output of each command
+   * is buffered, and written to the stream when the next prompt is shown.
+   *
+   * @param scanner The scanner to read user input from.
+   * @param out The stream to write output to.
+   */
+  public Main(final Scanner scanner, final OutputStream out) {
+    this(scanner, out, new GraphCache());
+  }
+
+  /**
+   * Create a new command line interface that opens files through the given cache, so graphs
+   * opened by other interfaces sharing the cache are not loaded again.
+   *
+   * @param scanner The scanner to read user input from.
+   * @param out The stream to write output to.
+   * @param graphs The cache of loaded graphs.
+   */
+  public Main(final Scanner scanner, final OutputStream out, final GraphCache graphs) {
     this.scanner = scanner;
+    this.out = new CommandOutput(out);
+    this.graphs = graphs;
+    this.workspace =
+        new GraphWorkspace(filename -> new GraphCalculator(filename, graphs, loaders, this.out));
   }
 
   /** Process commands from the user for the graph calculator command line interface. */
   public void start() {
-    System.out.println(help());
+    out.println(help());
 
     String command;
 
-    // Prompt and process commands until the exit command.
-    do {
-      System.out.print(COMMAND_PREFIX);
-      command = scanner.nextLine().trim();
-    } while (processCommand(command));
+    // Prompt and process commands until the exit command, flushing the output once per command.
+    try {
+      do {
+        out.print(COMMAND_PREFIX).flush();
+        command = scanner.nextLine().trim();
+      } while (processCommand(command));
+    } finally {
+      // The input may have ended without the exit command
+      workspace.stopWatching();
+      out.flush();
+    }
   }
 
   /**
-   * Execute a command entered by the user and determine if more commands are expected.
+   * Execute a command entered by the user and determine if more commands are expected. A command
+   * runs on the current graph, unless it starts with {@code @<ALIAS>} to run on the graph of that
+   * alias instead.
    *
    * @param input The command entered by the user.
    * @return If the program should continue to wait for another command.
@@ -78,7 +288,8 @@ public class Main {
     // Remove whitespace at the beginning and end of the input.
     input = input.trim();
 
-    final String[] args = input.split(" ");
+    final String alias = findAlias(input.split(" "));
+    final String[] args = withoutAlias(input.split(" "));
 
     // Allow any case, and dashes to be used instead of underscores.
     final String commandStr = args[0].toUpperCase().replaceAll("-", "_");
@@ -89,7 +300,7 @@ public class Main {
       // Command names correspond to the enum names.
       command = Command.valueOf(commandStr);
     } catch (final Exception e) {
-      MessageCli.COMMAND_NOT_FOUND.printMessage(commandStr);
+      MessageCli.COMMAND_NOT_FOUND.printMessage(out, commandStr);
       return true;
     }
 
@@ -97,32 +308,172 @@ public class Main {
     if (!checkArgs(command, args)) {
       final String numCommandArgs = String.valueOf(command.getNumArgs());
       final String plural = command.getNumArgs() > 1 ? "s" : "";
-      MessageCli.WRONG_ARGUMENT_COUNT.printMessage(numCommandArgs, plural, commandStr);
+      MessageCli.WRONG_ARGUMENT_COUNT.printMessage(out, numCommandArgs, plural, commandStr);
+      return true;
+    }
+
+    // These commands do not run on a graph, so they can be used when no file is open.
+    switch (command) {
+      case OPEN_FILE:
+        openFile(alias != null ? alias : args[1], args[1]);
+        return true;
+      case LIST_GRAPHS:
+        printGraphs();
+        return true;
+      case USE_GRAPH:
+        if (workspace.use(args[1]) == null) {
+          MessageCli.GRAPH_NOT_OPEN.printMessage(out, args[1]);
+        } else {
+          MessageCli.USING_GRAPH.printMessage(out, args[1]);
+        }
+        return true;
+      case CLOSE_GRAPH:
+        if (workspace.remove(args[1])) {
+          MessageCli.CLOSED_GRAPH.printMessage(out, args[1]);
+        } else {
+          MessageCli.GRAPH_NOT_OPEN.printMessage(out, args[1]);
+        }
+        return true;
+      case CACHE_STATS:
+        MessageCli.CACHE_STATS.printMessage(
+            out,
+            String.valueOf(graphs.getHits()),
+            String.valueOf(graphs.getMisses()),
+            String.valueOf(graphs.getEvictions()),
+            String.valueOf(graphs.getSize()),
+            String.valueOf(graphs.getBytes()),
+            String.valueOf(graphs.getMaxBytes()));
+        return true;
+      case HELP:
+        out.println(help());
+        return true;
+      case EXIT:
+        workspace.stopWatching();
+        MessageCli.END.printMessage(out);
+
+        // Signal that the program should exit.
+        return false;
+      default:
+        break;
+    }
+
+    // Every other command runs on a graph, which has to be open.
+    final String name = alias != null ? alias : workspace.getCurrentAlias();
+    final GraphCalculator calculator = name != null ? workspace.get(name) : null;
+    if (calculator == null) {
+      if (alias != null) {
+        MessageCli.GRAPH_NOT_OPEN.printMessage(out, alias);
+      } else {
+        MessageCli.FILE_NOT_OPEN.printMessage(out);
+      }
       return true;
     }
 
-    // A file is only open if there is a calculator instance.
-    // The user cannot do anything other than open a file, exit,
-    // or get help if there is no file.
-    if (calculator == null
-        && command != Command.OPEN_FILE
-        && command != Command.EXIT
-        && command != Command.HELP) {
-      MessageCli.FILE_NOT_OPEN.printMessage();
+    // Wait for a file loading in the background only as far as the command needs it.
+    if (!awaitCalculator(calculator, command)) {
+      MessageCli.LOAD_FAILED.printMessage(
+          out, calculator.getFileName(), calculator.getLoadError());
+      workspace.remove(name);
       return true;
     }
 
     switch (command) {
-      case OPEN_FILE:
-        final String filename = args[1];
-
-        try {
-          calculator = new GraphCalculator(filename);
-          MessageCli.OPENED_FILE_SUCCESSFULLY.printMessage(filename);
-        } catch (FileNotFoundException e) {
-          MessageCli.FILE_NOT_FOUND.printMessage(filename);
-        }
+      case LOAD_STATUS:
+        calculator.printLoadStatus();
+        break;
+      case WATCH_FILE:
+        calculator.printWatchFile();
+        break;
+      case UNWATCH_FILE:
+        calculator.printUnwatchFile();
         break;
+      default:
+        processReadOnlyCommand(calculator, command, args);
+        break;
+    }
+
+    // Signal that another command is expected.
+    return true;
+  }
+
+  /**
+   * Open a file as a graph of the workspace, and make it the current graph.
+   *
+   * @param alias The alias to give the graph, replacing any graph with the same alias.
+   * @param filename The name of the file to open.
+   */
+  private void openFile(final String alias, final String filename) {
+    try {
+      final GraphCalculator opened = new GraphCalculator(filename, graphs, loaders, out);
+
+      // The graph being replaced is no longer watched
+      final GraphCalculator replaced = workspace.put(alias, filename, opened);
+      if (replaced != null) {
+        replaced.stopWatching();
+      }
+      if (opened.isLoadingInBackground()) {
+        MessageCli.LOADING_FILE.printMessage(out, filename);
+      } else {
+        MessageCli.OPENED_FILE_SUCCESSFULLY.printMessage(out, filename);
+      }
+    } catch (FileNotFoundException e) {
+      MessageCli.FILE_NOT_FOUND.printMessage(out, filename);
+    }
+  }
+
+  /** Print every graph of the workspace, marking the current graph, and the memory each uses. */
+  private void printGraphs() {
+    if (workspace.isEmpty()) {
+      MessageCli.FILE_NOT_OPEN.printMessage(out);
+      return;
+    }
+
+    for (final String alias : workspace.getAliases()) {
+      final String name = (alias.equals(workspace.getCurrentAlias()) ? "* " : "  ") + alias;
+
+      // Listing the graphs does not open a released graph again
+      final GraphCalculator calculator = workspace.peek(alias);
+      if (calculator == null) {
+        MessageCli.WORKSPACE_GRAPH_RELEASED.printMessage(out, name, workspace.getFileName(alias));
+      } else {
+        calculator.printSummary(name);
+      }
+    }
+  }
+
+  /**
+   * Find the alias a command is aimed at.
+   *
+   * @param args The command and its arguments, starting with {@code @<ALIAS>} if aimed at a graph.
+   * @return The alias, or null if the command runs on the current graph.
+   */
+  private static String findAlias(final String[] args) {
+    if (args.length > 1 && args[0].startsWith(ALIAS_PREFIX)) {
+      return args[0].substring(ALIAS_PREFIX.length());
+    }
+    return null;
+  }
+
+  /**
+   * Remove the alias a command is aimed at from its arguments.
+   *
+   * @param args The command and its arguments, starting with {@code @<ALIAS>} if aimed at a graph.
+   * @return The command and its arguments.
+   */
+  private static String[] withoutAlias(final String[] args) {
+    return findAlias(args) != null ? Arrays.copyOfRange(args, 1, args.length) : args;
+  }
+
+  /**
+   * Execute a command that only reads the graph of the open file.
+   *
+   * @param calculator The calculator of the open file.
+   * @param command The command to execute.
+   * @param args The arguments provided by the user.
+   */
+  private static void processReadOnlyCommand(
+      final GraphCalculator calculator, final Command command, final String[] args) {
+    switch (command) {
       case INFO:
         calculator.printInfo();
         break;
@@ -150,30 +501,254 @@ public class Main {
       case COMPUTE_EQUIVALENCE:
         calculator.printEquivalenceClass(args[1]);
         break;
+      case SAME_EQUIVALENCE_CLASS:
+        calculator.printSameEquivalenceClass(args[1], args[2]);
+        break;
       case GRAPH_SEARCH_IBFS:
         calculator.printIterativeBreadthFirstSearch();
         break;
       case GRAPH_SEARCH_IDFS:
         calculator.printDepthFirstSearch();
         break;
+      case GRAPH_SEARCH_PBFS:
+        calculator.printParallelBreadthFirstSearch();
+        break;
       case GRAPH_SEARCH_RBFS:
         calculator.printRecursiveBreadthFirstSearch();
         break;
       case GRAPH_SEARCH_RDFS:
         calculator.printRecursiveDepthFirstSearch();
         break;
-      case EXIT:
-        MessageCli.END.printMessage();
+      default:
+        throw new IllegalArgumentException(command + " changes the state of the calculator");
+    }
+  }
 
-        // Signal that the program should exit.
-        return false;
-      case HELP:
-        System.out.println(help());
-        break;
+  /** A line of a script that only reads a graph, with the graph it reads. */
+  private static final class ReadOnlyCommand {
+    private final String line;
+
+    private final Command command;
+
+    private final String[] args;
+
+    private final GraphCalculator calculator;
+
+    private ReadOnlyCommand(
+        final String line,
+        final Command command,
+        final String[] args,
+        final GraphCalculator calculator) {
+      this.line = line;
+      this.command = command;
+      this.args = args;
+      this.calculator = calculator;
     }
+  }
 
-    // Signal that another command is expected.
-    return true;
+  /**
+   * The output of a command run at the same time as the commands before it in a script. The output
+   * is held back until the commands before it have been written out, and is then written straight
+   * through. At most {@link #HELD_BYTES} are held, after which the command waits for its turn.
+   */
+  private static final class HeldOutput extends OutputStream {
+    private static final int HELD_BYTES = 1 << 20;
+
+    private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+
+    private CommandOutput through;
+
+    private long waitedNanos;
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] bytes, final int offset, final int length)
+        throws IOException {
+      if (through == null && held.size() + length > HELD_BYTES) {
+        final long start = System.nanoTime();
+        try {
+          while (through == null) {
+            wait();
+          }
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("cancelled while waiting to write");
+        }
+        waitedNanos += System.nanoTime() - start;
+      }
+      if (through != null) {
+        through.write(bytes, offset, length);
+      } else {
+        held.write(bytes, offset, length);
+      }
+    }
+
+    /**
+     * Write out what has been held, and write everything after it straight to the given output.
+     *
+     * @param out The output of the script.
+     */
+    private synchronized void release(final CommandOutput out) {
+      out.write(held.toByteArray());
+      held.reset();
+      through = out;
+      notifyAll();
+    }
+
+    /**
+     * Get how long the command has waited for its turn to write.
+     *
+     * @return The time waited, in nanoseconds.
+     */
+    private synchronized long getWaitedNanos() {
+      return waitedNanos;
+    }
+  }
+
+  /**
+   * Find the command of a line of a script that can run at the same time as the commands around
+   * it, because it only reads a graph of the workspace and is given the right arguments.
+   *
+   * @param input The line of the script.
+   * @return The command, or null if the line has to run on its own.
+   */
+  private ReadOnlyCommand findReadOnlyCommand(final String input) {
+    final String alias = findAlias(input.trim().split(" "));
+    final String[] args = withoutAlias(input.trim().split(" "));
+    final Command command;
+    try {
+      command = Command.valueOf(args[0].toUpperCase().replaceAll("-", "_"));
+    } catch (final Exception e) {
+      return null;
+    }
+    if (!checkArgs(command, args)) {
+      return null;
+    }
+
+    switch (command) {
+      case INFO:
+      case LIST_VERTICIES_EDGES:
+      case LIST_ROOT_VERTICIES:
+      case CHECK_REFLEXIVITY:
+      case CHECK_SYMMETRY:
+      case CHECK_TRANSITIVITY:
+      case CHECK_ANTISYMMETRY:
+      case CHECK_EQUIVALENCE:
+      case COMPUTE_EQUIVALENCE:
+      case SAME_EQUIVALENCE_CLASS:
+      case GRAPH_SEARCH_IBFS:
+      case GRAPH_SEARCH_IDFS:
+      case GRAPH_SEARCH_PBFS:
+      case GRAPH_SEARCH_RBFS:
+      case GRAPH_SEARCH_RDFS:
+        final String name = alias != null ? alias : workspace.getCurrentAlias();
+        final GraphCalculator calculator = name != null ? workspace.get(name) : null;
+        return calculator != null ? new ReadOnlyCommand(input, command, args, calculator) : null;
+      default:
+        // Load status depends on when it runs, and the other commands change what is open
+        return null;
+    }
+  }
+
+  /**
+   * Execute a run of read-only commands of a script at the same time, on the worker pool. Each
+   * command prints to its own held output, and the held outputs are written out in the order of
+   * the script, so the output is the same as running them one at a time. The command whose turn it
+   * is writes straight to the output, so only the commands after it hold any output back.
+   *
+   * @param commands The read-only commands, see {@link #findReadOnlyCommand}.
+   * @param times The output to report the time each command took to.
+   */
+  private void processConcurrently(
+      final List<ReadOnlyCommand> commands, final CommandOutput times) {
+    if (commands.isEmpty()) {
+      return;
+    }
+
+    // The graphs are waited for first, so a failed load is reported at the same command as usual
+    boolean loaded = commands.size() > 1;
+    for (final ReadOnlyCommand command : commands) {
+      loaded = loaded && command.calculator.awaitGraph();
+    }
+    if (!loaded) {
+      for (final ReadOnlyCommand command : commands) {
+        final long start = System.nanoTime();
+        processCommand(command.line);
+        MessageCli.BATCH_COMMAND_TIME.printMessage(
+            times, formatMillis(System.nanoTime() - start), command.line.trim());
+      }
+      return;
+    }
+
+    final List<Future<Long>> outputs = new ArrayList<>(commands.size());
+    final List<HeldOutput> held = new ArrayList<>(commands.size());
+    for (final ReadOnlyCommand command : commands) {
+      final HeldOutput bytes = new HeldOutput();
+      held.add(bytes);
+      outputs.add(
+          workers.submit(
+              () -> {
+                final long start = System.nanoTime();
+                // The held output already gathers the bytes, so this only needs a small buffer
+                final CommandOutput output = new CommandOutput(bytes, false, 1 << 13);
+                try {
+                  processReadOnlyCommand(
+                      command.calculator.printingTo(output), command.command, command.args);
+                } finally {
+                  output.flush();
+                }
+                return System.nanoTime() - start - bytes.getWaitedNanos();
+              }));
+    }
+
+    for (int i = 0; i < commands.size(); i++) {
+      final String line = commands.get(i).line.trim();
+      final long nanos;
+      try {
+        held.get(i).release(out);
+        nanos = outputs.get(i).get();
+      } catch (final InterruptedException e) {
+        // The commands still running would only print to buffers nobody reads
+        for (int j = i; j < commands.size(); j++) {
+          outputs.get(j).cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw new CancellationException("interrupted while waiting for " + line);
+      } catch (final ExecutionException e) {
+        // The commands after a failed command are not reported, as if they had not run
+        for (int j = i + 1; j < commands.size(); j++) {
+          outputs.get(j).cancel(true);
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw (RuntimeException) e.getCause();
+      }
+      MessageCli.BATCH_COMMAND_TIME.printMessage(times, formatMillis(nanos), line);
+    }
+  }
+
+  /**
+   * Wait until the graph of a file is ready for the command.
+   *
+   * @param calculator The calculator of the file.
+   * @param command The command about to run.
+   * @return If the graph is ready, rather than failed to load.
+   */
+  private boolean awaitCalculator(final GraphCalculator calculator, final Command command) {
+    switch (command) {
+      case INFO:
+      case LOAD_STATUS:
+      case UNWATCH_FILE:
+        // These commands do not use the graph
+        return true;
+      default:
+        return calculator.awaitGraph();
+    }
   }
 
   /**
@@ -1,5 +1,7 @@
 package nz.ac.auckland.se281;
 
+import java.util.regex.Matcher;
+
 /**
  * Templates of messages that can be printed to the CLI.
  *
@@ -13,7 +15,22 @@ public enum MessageCli {
           + " command"),
 
   OPENED_FILE_SUCCESSFULLY("Successfully opened graph from file %s"),
+  LOADING_FILE("Opened file %s, loading the graph in the background"),
+  LOAD_STATUS("%s %s: %s of %s bytes read, %s edges ingested"),
+  LOAD_FAILED("Error: could not load graph from file %s: %s"),
+  WATCHING_FILE("Watching file %s for appended edges"),
+  ALREADY_WATCHING_FILE("Already watching file %s"),
+  WATCH_FAILED("Error: could not watch file %s: %s"),
+  UNWATCHED_FILE("Stopped watching file %s, after %s appends and %s full reloads"),
+  NOT_WATCHING_FILE("Error: file %s is not being watched"),
   FILE_NOT_OPEN("Error: no valid file open"),
+  GRAPH_NOT_OPEN("Error: no graph named %s is open"),
+  USING_GRAPH("Using graph %s"),
+  CLOSED_GRAPH("Closed graph %s"),
+  WORKSPACE_GRAPH("%s: file %s, %s verticies, %s edges, about %s bytes"),
+  WORKSPACE_GRAPH_LOADING("%s: file %s, still loading"),
+  WORKSPACE_GRAPH_FAILED("%s: file %s, failed to load"),
+  WORKSPACE_GRAPH_RELEASED("%s: file %s, released to free memory"),
   FILE_NOT_FOUND("Error: file '%s' not found in `testcases` folder"),
   INFO("File name: %s"),
 
@@ -22,6 +39,17 @@ public enum MessageCli {
   GRAPH_ANTI_SYMMETRIC("The graph is %santisymmetric"),
   GRAPH_EQUIVALENCE("The graph is %san equivalence relation"),
   GRAPH_TRANSITIVE("The graph is %stransitive"),
+  SAME_EQUIVALENCE_CLASS("Verticies %s and %s are %sin the same equivalence class"),
+
+  CACHE_STATS(
+      "Graph cache: %s hits, %s misses, %s evictions, %s graphs cached using about %s of %s"
+          + " bytes"),
+
+  BATCH_COMMAND_TIME("%s ms\t%s"),
+  BATCH_TOTAL_TIME("Ran %s commands in %s ms"),
+  SCRIPT_NOT_READ("Error: could not read script %s: %s"),
+  SERVER_LISTENING("Serving graphs on %s"),
+  SERVER_FAILED("Error: could not serve graphs on %s: %s"),
 
   END("You closed the terminal. Goodbye.");
 
@@ -47,7 +75,8 @@ public enum MessageCli {
     String tmpMessage = msg;
 
     for (final String arg : args) {
-      tmpMessage = tmpMessage.replaceFirst("%s", arg);
+      // The argument is quoted, so a dollar sign or backslash in it is not a group reference
+      tmpMessage = tmpMessage.replaceFirst("%s", Matcher.quoteReplacement(arg));
     }
 
     return tmpMessage;
@@ -61,4 +90,15 @@ public enum MessageCli {
   public void printMessage(final String... args) {
     System.out.println(getMessage(args));
   }
+
+  /**
+   * Print the message to the given output after filling the template using {@link
+   * #getMessage(String...)}.
+   *
+   * @param out The output to print to.
+   * @param args The arguments to fill in the template.
+   */
+  public void printMessage(final CommandOutput out, final String... args) {
+    out.println(getMessage(args));
+  }
 }
@@ -1,5 +1,7 @@
 package nz.ac.auckland.se281.datastructures;
 
+import java.util.Objects;
+
 /**
  * An edge in a graph that connects two verticies.
  *
@@ -34,4 +36,27 @@ public class Edge<T> {
   public T getDestination() {
     return destination;
   }
+
+  /**
+   * Two edges are equal when they connect the same source to the same destination.
+   *
+   * @param o The object to compare with.
+   * @return If the object is an equal edge.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Edge)) {
+      return false;
+    }
+    Edge<?> other = (Edge<?>) o;
+    return Objects.equals(source, other.source) && Objects.equals(destination, other.destination);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(source, destination);
+  }
 }
@@ -0,0 +1,251 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The edges of a graph, each packed into a single long with the source id in the high half and the
+ * destination id in the low half, kept in one array without duplicates. The edges are grouped by
+ * source, and the edges leaving a vertex are sorted into the numerical order of their
+ * destinations, so the array with the start offset of every vertex is a compressed sparse row (CSR)
+ * index of the graph. Iterating a row from its start to its end gives forward order, and from its
+ * end to its start gives reverse order.
+ *
+ * <p>The store is the only copy of the edges a graph keeps, eight bytes an edge and four bytes a
+ * vertex. Whether an edge exists is answered by a binary search of the row of its source. The
+ * arrays are held as buffers, so a store read from a snapshot can be a view over the memory mapped
+ * file instead of a copy on the heap.
+ */
+final class EdgeStore {
+
+  private static final int PARALLEL_SORT_EDGES = 1 << 16;
+
+  private final LongBuffer edges;
+  private final IntBuffer offsets;
+  private final VertexInterner<?> interner;
+
+  /**
+   * builds the store from packed edges, sorting them into rows and dropping repeated edges.
+   *
+   * @param packed the packed edges, which the store takes over and may reorder.
+   * @param count the number of packed edges in the array.
+   * @param interner the ids of the verticies, including every vertex the edges name.
+   */
+  EdgeStore(long[] packed, int count, VertexInterner<?> interner) {
+    int vertexCount = interner.size();
+    int[] order = interner.numericalOrder();
+    int[] rank = new int[vertexCount];
+    for (int i = 0; i < vertexCount; i++) {
+      rank[order[i]] = i;
+    }
+
+    // Pack every edge as its source and the rank of its destination in place, so one primitive
+    // sort groups the edges into rows and orders each row
+    for (int i = 0; i < count; i++) {
+      packed[i] = (packed[i] & 0xFFFFFFFF00000000L) | rank[(int) packed[i]];
+    }
+    if (count >= PARALLEL_SORT_EDGES) {
+      Arrays.parallelSort(packed, 0, count);
+    } else {
+      Arrays.sort(packed, 0, count);
+    }
+
+    // Squeeze out repeated edges, which sit next to each other once sorted, and turn the ranks
+    // back into ids while counting the out degree of every vertex
+    int[] offsets = new int[vertexCount + 1];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      if (size == 0 || packed[i] != packed[size - 1]) {
+        packed[size++] = packed[i];
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      offsets[(int) (packed[i] >>> 32) + 1]++;
+      packed[i] = (packed[i] & 0xFFFFFFFF00000000L) | order[(int) packed[i]];
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    this.edges = LongBuffer.wrap(size == packed.length ? packed : Arrays.copyOf(packed, size));
+    this.offsets = IntBuffer.wrap(offsets);
+    this.interner = interner;
+  }
+
+  /**
+   * creates the store over rows that have already been built, such as rows mapped from a snapshot.
+   *
+   * @param rows the packed edges, grouped and sorted into rows, indexed from zero.
+   * @param offsets the start position of the row of every vertex, then the edge count, indexed
+   *     from zero.
+   * @param interner the ids of the verticies.
+   */
+  EdgeStore(LongBuffer rows, IntBuffer offsets, VertexInterner<?> interner) {
+    this.edges = rows;
+    this.offsets = offsets;
+    this.interner = interner;
+  }
+
+  /**
+   * packs an edge into a single long.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return the packed edge.
+   */
+  static long pack(int source, int destination) {
+    return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+  }
+
+  /**
+   * returns the number of distinct edges.
+   *
+   * @return the number of edges.
+   */
+  int size() {
+    return edges.limit();
+  }
+
+  /**
+   * returns the number of verticies covered by the rows.
+   *
+   * @return the number of verticies.
+   */
+  int vertexCount() {
+    return offsets.limit() - 1;
+  }
+
+  /**
+   * returns the position of the first edge leaving the given vertex.
+   *
+   * @param vertex the id of the vertex.
+   * @return the inclusive start position of its row.
+   */
+  int start(int vertex) {
+    return offsets.get(vertex);
+  }
+
+  /**
+   * returns the position after the last edge leaving the given vertex.
+   *
+   * @param vertex the id of the vertex.
+   * @return the exclusive end position of its row.
+   */
+  int end(int vertex) {
+    return offsets.get(vertex + 1);
+  }
+
+  /**
+   * returns the source of the edge at the given position.
+   *
+   * @param position the position of the edge.
+   * @return the id of the source vertex.
+   */
+  int source(int position) {
+    return (int) (edges.get(position) >>> 32);
+  }
+
+  /**
+   * returns the destination of the edge at the given position, which is the neighbor at that
+   * position of the row of its source.
+   *
+   * @param position the position of the edge.
+   * @return the id of the destination vertex.
+   */
+  int destination(int position) {
+    return (int) edges.get(position);
+  }
+
+  /**
+   * returns the packed edge at the given position.
+   *
+   * @param position the position of the edge.
+   * @return the packed edge.
+   */
+  long packed(int position) {
+    return edges.get(position);
+  }
+
+  /**
+   * checks if the store holds an edge from the given source to the given destination, with a
+   * binary search of the row of the source.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return boolean value of whether the edge exists.
+   */
+  boolean contains(int source, int destination) {
+    int low = offsets.get(source);
+    int high = offsets.get(source + 1) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int order = interner.compare((int) edges.get(middle), destination);
+      if (order < 0) {
+        low = middle + 1;
+      } else if (order > 0) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * returns a store holding the edges of this store and the given store, merging the rows of every
+   * vertex in a single pass instead of sorting them again.
+   *
+   * @param added the edges to add, over the ids of the given interner.
+   * @param extended the ids of the verticies, including any verticies the new edges name.
+   * @return the merged store.
+   */
+  EdgeStore merge(EdgeStore added, VertexInterner<?> extended) {
+    int vertexCount = extended.size();
+    long[] merged = new long[size() + added.size()];
+    int[] mergedOffsets = new int[vertexCount + 1];
+    int size = 0;
+    for (int v = 0; v < vertexCount; v++) {
+      mergedOffsets[v] = size;
+      int i = v < vertexCount() ? start(v) : 0;
+      int end = v < vertexCount() ? end(v) : 0;
+      int j = v < added.vertexCount() ? added.start(v) : 0;
+      int addedEnd = v < added.vertexCount() ? added.end(v) : 0;
+
+      while (i < end || j < addedEnd) {
+        long next;
+        if (j == addedEnd
+            || (i < end && extended.compare(destination(i), added.destination(j)) <= 0)) {
+          next = edges.get(i++);
+        } else {
+          next = added.edges.get(j++);
+        }
+        // An edge held by both stores is only kept once
+        if (size == mergedOffsets[v] || merged[size - 1] != next) {
+          merged[size++] = next;
+        }
+      }
+    }
+    mergedOffsets[vertexCount] = size;
+    return new EdgeStore(
+        LongBuffer.wrap(size == merged.length ? merged : Arrays.copyOf(merged, size)),
+        IntBuffer.wrap(mergedOffsets),
+        extended);
+  }
+
+  /**
+   * estimates the heap used by the store. A store mapped from a snapshot keeps its arrays off the
+   * heap, so only the buffers themselves are counted.
+   *
+   * @return the estimated size in bytes.
+   */
+  long estimatedBytes() {
+    long bytes = 96;
+    if (edges.hasArray()) {
+      bytes += (long) edges.limit() * Long.BYTES;
+    }
+    if (offsets.hasArray()) {
+      bytes += (long) offsets.limit() * Integer.BYTES;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,158 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * The partition of the verticies of an equivalence relation into its equivalence classes, built in
+ * a single union-find pass over the edges. Every vertex id maps to a class id, the members of each
+ * class are stored together in numerical order, and the first member of a class is its lowest
+ * numbered vertex.
+ */
+final class EquivalencePartition {
+
+  private final int[] classOf;
+  private final int[] offsets;
+  private final int[] members;
+
+  /**
+   * builds the partition over the edges of a graph.
+   *
+   * @param order every vertex id, sorted in numerical order.
+   * @param store the edges of the graph.
+   */
+  EquivalencePartition(int[] order, EdgeStore store) {
+    int vertexCount = order.length;
+    int[] parent = new int[vertexCount];
+    int[] size = new int[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      parent[v] = v;
+      size[v] = 1;
+    }
+
+    // Union the two ends of every edge, always hanging the smaller tree under the larger one
+    for (int i = 0; i < store.size(); i++) {
+      int a = find(parent, store.source(i));
+      int b = find(parent, store.destination(i));
+      if (a != b) {
+        if (size[a] < size[b]) {
+          int swap = a;
+          a = b;
+          b = swap;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+      }
+    }
+
+    // Number the classes in the numerical order of their lowest vertex, and count their sizes
+    classOf = new int[vertexCount];
+    int[] classOfRoot = new int[vertexCount];
+    Arrays.fill(classOfRoot, -1);
+    int classCount = 0;
+    for (int vertex : order) {
+      int root = find(parent, vertex);
+      if (classOfRoot[root] < 0) {
+        classOfRoot[root] = classCount++;
+      }
+      classOf[vertex] = classOfRoot[root];
+    }
+
+    offsets = new int[classCount + 1];
+    for (int v = 0; v < vertexCount; v++) {
+      offsets[classOf[v] + 1]++;
+    }
+    for (int c = 0; c < classCount; c++) {
+      offsets[c + 1] += offsets[c];
+    }
+
+    // Placing the verticies in numerical order keeps the members of every class sorted
+    members = new int[vertexCount];
+    int[] cursor = Arrays.copyOf(offsets, classCount);
+    for (int vertex : order) {
+      members[cursor[classOf[vertex]]++] = vertex;
+    }
+  }
+
+  /**
+   * finds the root of the tree holding the given vertex, halving the path on the way up.
+   *
+   * @param parent the parent of every vertex.
+   * @param vertex the id of the vertex.
+   * @return the id of the root.
+   */
+  private static int find(int[] parent, int vertex) {
+    while (parent[vertex] != vertex) {
+      parent[vertex] = parent[parent[vertex]];
+      vertex = parent[vertex];
+    }
+    return vertex;
+  }
+
+  /**
+   * returns the number of equivalence classes.
+   *
+   * @return the number of classes.
+   */
+  int classCount() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * returns the class of the given vertex.
+   *
+   * @param vertex the id of the vertex.
+   * @return the id of its class.
+   */
+  int classOf(int vertex) {
+    return classOf[vertex];
+  }
+
+  /**
+   * returns the lowest numbered vertex of the given class.
+   *
+   * @param equivalenceClass the id of the class.
+   * @return the id of its representative vertex.
+   */
+  int representative(int equivalenceClass) {
+    return members[offsets[equivalenceClass]];
+  }
+
+  /**
+   * returns the position of the first member of the given class.
+   *
+   * @param equivalenceClass the id of the class.
+   * @return the inclusive start position of its members.
+   */
+  int start(int equivalenceClass) {
+    return offsets[equivalenceClass];
+  }
+
+  /**
+   * returns the position after the last member of the given class.
+   *
+   * @param equivalenceClass the id of the class.
+   * @return the exclusive end position of its members.
+   */
+  int end(int equivalenceClass) {
+    return offsets[equivalenceClass + 1];
+  }
+
+  /**
+   * returns the member stored at the given position.
+   *
+   * @param position a position between {@link #start(int)} and {@link #end(int)} of a class.
+   * @return the id of the member.
+   */
+  int member(int position) {
+    return members[position];
+  }
+
+  /**
+   * estimates the heap used by the partition.
+   *
+   * @return the estimated size in bytes.
+   */
+  long estimatedBytes() {
+    return 48 + ((long) classOf.length + offsets.length + members.length) * Integer.BYTES;
+  }
+}
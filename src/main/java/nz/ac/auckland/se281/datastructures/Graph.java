@@ -1,11 +1,28 @@
 package nz.ac.auckland.se281.datastructures;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A graph that is composed of a set of verticies and edges.
@@ -16,184 +33,687 @@ import java.util.TreeSet;
  */
 public class Graph<T extends Comparable<T>> {
 
-  private class NumericalComparator implements Comparator<T> {
-    @Override
-    public int compare(T o1, T o2) {
-      Integer i1 = Integer.parseInt(o1.toString());
-      Integer i2 = Integer.parseInt(o2.toString());
-      return i1.compareTo(i2);
+  /** The frames of a depth first search, each a vertex and the position of its next neighbor. */
+  private static class FrameStack {
+    private int[] verticies = new int[16];
+    private int[] positions = new int[16];
+    private int size;
+
+    private void push(int vertex, int position) {
+      if (size == verticies.length) {
+        verticies = Arrays.copyOf(verticies, size * 2);
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      verticies[size] = vertex;
+      positions[size] = position;
+      size++;
+    }
+
+    private void pop() {
+      size--;
+    }
+
+    private int topVertex() {
+      return verticies[size - 1];
+    }
+
+    private int topPosition() {
+      return positions[size - 1];
+    }
+
+    private void setTopPosition(int position) {
+      positions[size - 1] = position;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
     }
   }
 
-  private class ReverseNumericalComparator implements Comparator<T> {
+  /**
+   * A lazy search of the graph, visiting one vertex each time it is advanced. A search visits
+   * every vertex at most once, in the order of the search, and only does the work for the verticies
+   * handed out so far, so it can be stopped early. The number of verticies it will visit is not
+   * known in advance, so it is not sized.
+   */
+  private abstract class LazySearch extends Spliterators.AbstractSpliterator<T> {
+    final int[] searchRoots = getRootIds();
+    final boolean[] visited = new boolean[edges.vertexCount()];
+    int nextRoot;
+    private long remaining = edges.vertexCount();
+
+    private LazySearch() {
+      super(
+          edges.vertexCount(),
+          Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
     @Override
-    public int compare(T o1, T o2) {
-      Integer i1 = Integer.parseInt(o1.toString());
-      Integer i2 = Integer.parseInt(o2.toString());
-      return i2.compareTo(i1);
+    public boolean tryAdvance(Consumer<? super T> action) {
+      int vertex = nextVertex();
+      if (vertex < 0) {
+        return false;
+      }
+      remaining--;
+      action.accept(interner.vertexOf(vertex));
+      return true;
+    }
+
+    @Override
+    public long estimateSize() {
+      // At most the verticies not handed out yet are left to visit
+      return remaining;
     }
+
+    /**
+     * advances the search by one vertex.
+     *
+     * @return the id of the next vertex, or -1 if the search is finished.
+     */
+    abstract int nextVertex();
   }
 
-  private class CustomLinkedList<T> {
-    private Node<T> head;
-    private Node<T> tail;
+  /** A lazy breadth first search, in the same order as the iterative breadth first search. */
+  private class LazyBreadthFirstSearch extends LazySearch {
+    private final IntQueue queue = new IntQueue();
 
-    private void add(T data) {
-      // Create a new node, and add it to the end of the linked list
-      Node<T> newNode = new Node<>(data);
-      if (head == null) {
-        head = newNode;
-        tail = newNode;
-      } else {
-        tail.setNext(newNode);
-        tail = newNode;
+    @Override
+    int nextVertex() {
+      if (queue.isEmpty()) {
+        if (nextRoot == searchRoots.length) {
+          return -1;
+        }
+        int startVertex = searchRoots[nextRoot++];
+        visited[startVertex] = true;
+        queue.enqueue(startVertex);
       }
+
+      int currentVertex = queue.dequeue();
+      for (int j = edges.start(currentVertex); j < edges.end(currentVertex); j++) {
+        int adjacentVertex = edges.destination(j);
+        if (!visited[adjacentVertex]) {
+          visited[adjacentVertex] = true;
+          queue.enqueue(adjacentVertex);
+        }
+      }
+      return currentVertex;
     }
+  }
 
-    private T removeLast() {
-      T lastData = tail.getData();
-      if (head == tail) {
-        head = null;
-        tail = null;
-        // remove the last node if head is not equal to tail
-      } else {
-        Node<T> currentNode = head;
-        // Keep getting the next node until the next node is the tail
-        while (currentNode.getNext() != tail) {
-          currentNode = currentNode.getNext();
+  /** A lazy depth first search, in the same order as the iterative depth first search. */
+  private class LazyDepthFirstSearch extends LazySearch {
+    private final IntStack stack = new IntStack();
+
+    @Override
+    int nextVertex() {
+      while (true) {
+        if (stack.isEmpty()) {
+          if (nextRoot == searchRoots.length) {
+            return -1;
+          }
+          stack.push(searchRoots[nextRoot++]);
+        }
+
+        int currentVertex = stack.pop();
+        if (!visited[currentVertex]) {
+          visited[currentVertex] = true;
+          // Push the unvisited neighbors in reverse numerical order, so the lowest is popped first
+          for (int j = edges.end(currentVertex) - 1; j >= edges.start(currentVertex); j--) {
+            int neighbor = edges.destination(j);
+            if (!visited[neighbor]) {
+              stack.push(neighbor);
+            }
+          }
+          return currentVertex;
         }
-        currentNode.setNext(null);
-        tail = currentNode;
       }
-      return lastData;
     }
+  }
 
-    private boolean isEmpty() {
-      return head == null;
+  /** A read only view of one equivalence class, iterating its members in numerical order. */
+  private class EquivalenceClass extends AbstractSet<T> {
+    private final EquivalencePartition partition;
+    private final int equivalenceClass;
+
+    private EquivalenceClass(EquivalencePartition partition, int equivalenceClass) {
+      this.partition = partition;
+      this.equivalenceClass = equivalenceClass;
     }
 
-    private List<T> toList() {
-      List<T> list = new ArrayList<>();
-      Node<T> currentNode = head;
-      // Using nodes to get the data of each node, and add it to the list
-      while (currentNode != null) {
-        list.add(currentNode.getData());
-        currentNode = currentNode.getNext();
-      }
-      return list;
+    @Override
+    public boolean contains(Object o) {
+      // Membership is a class id comparison, instead of a search through the members
+      int id = interner.idOf(o);
+      return id >= 0 && partition.classOf(id) == equivalenceClass;
+    }
+
+    @Override
+    public int size() {
+      return partition.end(equivalenceClass) - partition.start(equivalenceClass);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int position = partition.start(equivalenceClass);
+
+        @Override
+        public boolean hasNext() {
+          return position < partition.end(equivalenceClass);
+        }
+
+        @Override
+        public T next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return interner.vertexOf(partition.member(position++));
+        }
+      };
     }
   }
 
-  private class CustomQueue<T> {
-    private CustomLinkedList<T> queue;
+  private VertexInterner<T> interner;
+  private int declaredCount;
+  private EdgeStore edges;
+  private volatile EquivalencePartition partition;
+  private volatile int[] inDegreeRootIds;
+  private volatile int[] rootIds;
+  private volatile Set<T> roots;
+  private volatile int[] labelOrder;
+  private volatile long fixedBytes = -1;
+  private final Queue<IntQueue> queuePool = new ConcurrentLinkedQueue<>();
+  private final Queue<IntStack> stackPool = new ConcurrentLinkedQueue<>();
+  private final AtomicReference<RelationProperties> properties =
+      new AtomicReference<>(RelationProperties.UNKNOWN);
 
-    private CustomQueue() {
-      queue = new CustomLinkedList<>();
+  /**
+   * Creates a new graph.
+   *
+   * @param verticies The set of verticies in the graph.
+   * @param edges The set of edges in the graph.
+   */
+  public Graph(Set<T> verticies, Set<Edge<T>> edges) {
+    // Intern the verticies once, so every algorithm can work on dense int ids
+    this.interner = new VertexInterner<>();
+    for (T vertex : verticies) {
+      interner.intern(vertex);
     }
+    this.declaredCount = interner.size();
 
-    private void enqueue(T data) {
-      queue.add(data);
+    // Pack every edge into a long, and let the store sort them and drop repeated edges
+    long[] packed = new long[edges.size()];
+    int count = 0;
+    for (Edge<T> edge : edges) {
+      int source = interner.intern(edge.getSource());
+      packed[count++] = EdgeStore.pack(source, interner.intern(edge.getDestination()));
     }
+    this.edges = new EdgeStore(packed, count, interner);
+  }
+
+  /**
+   * creates a graph over verticies and edges that have already been interned and packed.
+   *
+   * @param interner the ids of the verticies.
+   * @param declaredCount the number of verticies that were declared, rather than only named by an
+   *     edge. These have the lowest ids.
+   * @param edges the packed edges.
+   */
+  Graph(VertexInterner<T> interner, int declaredCount, EdgeStore edges) {
+    this(interner, declaredCount, edges, RelationProperties.UNKNOWN);
+  }
+
+  /**
+   * creates a graph whose indices and relation properties are already known, such as a graph read
+   * from a snapshot.
+   *
+   * @param interner the ids of the verticies.
+   * @param declaredCount the number of verticies that were declared, rather than only named by an
+   *     edge.
+   * @param edges the packed edges.
+   * @param known the relation properties computed so far.
+   */
+  Graph(
+      VertexInterner<T> interner, int declaredCount, EdgeStore edges, RelationProperties known) {
+    this.interner = interner;
+    this.declaredCount = declaredCount;
+    this.edges = edges;
+    this.properties.set(known);
+  }
+
+  /**
+   * returns a read only view of the verticies of the graph.
+   *
+   * @return the set of verticies.
+   */
+  public Set<T> getVerticies() {
+    return new AbstractSet<T>() {
+      @Override
+      public boolean contains(Object o) {
+        return interner.idOf(o) >= 0;
+      }
+
+      @Override
+      public int size() {
+        return interner.size();
+      }
+
+      @Override
+      public Iterator<T> iterator() {
+        return new Iterator<T>() {
+          private int id;
+
+          @Override
+          public boolean hasNext() {
+            return id < interner.size();
+          }
+
+          @Override
+          public T next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return interner.vertexOf(id++);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * returns a read only view of the edges of the graph. The edges are stored packed, so each edge
+   * is only made into an {@link Edge} when the view hands it out.
+   *
+   * @return the set of edges.
+   */
+  public Set<Edge<T>> getEdges() {
+    return new AbstractSet<Edge<T>>() {
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Edge)) {
+          return false;
+        }
+        Edge<?> edge = (Edge<?>) o;
+        int source = interner.idOf(edge.getSource());
+        int destination = interner.idOf(edge.getDestination());
+        return source >= 0 && destination >= 0 && edges.contains(source, destination);
+      }
+
+      @Override
+      public int size() {
+        return edges.size();
+      }
+
+      @Override
+      public Iterator<Edge<T>> iterator() {
+        return new Iterator<Edge<T>>() {
+          private int position;
+
+          @Override
+          public boolean hasNext() {
+            return position < edges.size();
+          }
 
-    private T dequeue() {
-      T data = queue.head.getData();
-      queue.head = queue.head.getNext();
-      return data;
+          @Override
+          public Edge<T> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            T source = interner.vertexOf(edges.source(position));
+            T destination = interner.vertexOf(edges.destination(position++));
+            return new Edge<>(source, destination);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * returns a new graph holding the verticies and edges of this graph along with the given ones,
+   * leaving this graph unchanged. The new edges are merged into the sorted rows of the edges
+   * instead of rebuilding them, and the roots and relation properties computed so far are
+   * carried over wherever the new edges alone can tell whether they still hold.
+   *
+   * <p>New verticies are declared verticies when every vertex of this graph is declared, as in a
+   * graph loaded from a file, and are otherwise treated like verticies only named by an edge.
+   *
+   * @param newVerticies the verticies to add.
+   * @param newEdges the edges to add, whose ends are added as verticies if they are new.
+   * @return the extended graph.
+   */
+  public Graph<T> extend(Collection<T> newVerticies, Collection<Edge<T>> newEdges) {
+    VertexInterner<T> extended = interner.copy();
+    for (T vertex : newVerticies) {
+      extended.intern(vertex);
     }
 
-    private boolean isEmpty() {
-      return queue.head == null;
+    // Only the edges this graph does not hold yet are merged in
+    long[] packed = new long[newEdges.size()];
+    int count = 0;
+    for (Edge<T> edge : newEdges) {
+      int source = extended.intern(edge.getSource());
+      int destination = extended.intern(edge.getDestination());
+      if (source >= interner.size()
+          || destination >= interner.size()
+          || !edges.contains(source, destination)) {
+        packed[count++] = EdgeStore.pack(source, destination);
+      }
     }
+    EdgeStore added = new EdgeStore(packed, count, extended);
+    EdgeStore mergedEdges = edges.merge(added, extended);
+    int extendedDeclared = declaredCount == interner.size() ? extended.size() : declaredCount;
+
+    Graph<T> graph =
+        new Graph<>(
+            extended,
+            extendedDeclared,
+            mergedEdges,
+            carryRelationProperties(added, mergedEdges, extendedDeclared));
+
+    int[] currentInDegreeRootIds = inDegreeRootIds;
+    if (currentInDegreeRootIds != null) {
+      graph.inDegreeRootIds =
+          extendInDegreeRootIds(currentInDegreeRootIds, added, extended, extendedDeclared);
+    }
+    return graph;
   }
 
-  private class CustomStack<T> {
-    private CustomLinkedList<T> list;
+  /**
+   * works out which of the relation properties known for this graph are still known once the
+   * given edges are added. Adding edges can only keep or break reflexivity, symmetry and
+   * antisymmetry that held before, so those are checked against the new edges alone, while a
+   * property that did not hold or transitivity are left to be computed again when asked for.
+   *
+   * @param added the edges being added, none of which are in this graph.
+   * @param mergedEdges the edges of the extended graph.
+   * @param extendedDeclared the number of declared verticies of the extended graph.
+   * @return the relation properties known for the extended graph.
+   */
+  private RelationProperties carryRelationProperties(
+      EdgeStore added, EdgeStore mergedEdges, int extendedDeclared) {
+    RelationProperties known = properties.get();
+    RelationProperties carried = RelationProperties.UNKNOWN;
+
+    if (Boolean.TRUE.equals(known.reflexive())) {
+      // Only the new declared verticies can be missing an edge to themselves
+      boolean reflexive = true;
+      for (int vertex = declaredCount; vertex < extendedDeclared && reflexive; vertex++) {
+        reflexive = mergedEdges.contains(vertex, vertex);
+      }
+      carried = carried.withReflexive(reflexive);
+    }
 
-    private CustomStack() {
-      list = new CustomLinkedList<>();
+    if (Boolean.TRUE.equals(known.symmetric())) {
+      boolean symmetric = true;
+      for (int i = 0; i < added.size() && symmetric; i++) {
+        symmetric = mergedEdges.contains(added.destination(i), added.source(i));
+      }
+      carried = carried.withSymmetric(symmetric);
     }
 
-    private void push(T data) {
-      list.add(data);
+    if (Boolean.FALSE.equals(known.antiSymmetric())) {
+      // An edge and its reverse are never taken away, so antisymmetry stays broken
+      carried = carried.withAntiSymmetric(false);
+    } else if (Boolean.TRUE.equals(known.antiSymmetric())) {
+      boolean antiSymmetric = true;
+      for (int i = 0; i < added.size() && antiSymmetric; i++) {
+        antiSymmetric = !mergedEdges.contains(added.destination(i), added.source(i));
+      }
+      carried = carried.withAntiSymmetric(antiSymmetric);
     }
+    return carried;
+  }
 
-    private T pop() {
-      return list.removeLast();
+  /**
+   * updates the verticies with no incoming edges for the given new edges, dropping the ones that
+   * a new edge now reaches and adding the new declared verticies that no new edge reaches.
+   *
+   * @param rootIds the ids of the verticies of this graph with no incoming edges.
+   * @param added the edges being added.
+   * @param extended the ids of the verticies of the extended graph.
+   * @param extendedDeclared the number of declared verticies of the extended graph.
+   * @return the ids of the verticies of the extended graph with no incoming edges.
+   */
+  private int[] extendInDegreeRootIds(
+      int[] rootIds, EdgeStore added, VertexInterner<T> extended, int extendedDeclared) {
+    int[] reached = new int[added.size()];
+    int reachedCount = 0;
+    for (int i = 0; i < added.size(); i++) {
+      // Self loops do not stop a vertex from being a root
+      if (added.source(i) != added.destination(i)) {
+        reached[reachedCount++] = added.destination(i);
+      }
     }
+    Arrays.sort(reached, 0, reachedCount);
 
-    private boolean isEmpty() {
-      return list.isEmpty();
+    int[] extendedRootIds = new int[rootIds.length + extendedDeclared - declaredCount];
+    int count = 0;
+    for (int vertex : rootIds) {
+      if (Arrays.binarySearch(reached, 0, reachedCount, vertex) < 0) {
+        extendedRootIds[count++] = vertex;
+      }
     }
+    for (int vertex = declaredCount; vertex < extendedDeclared; vertex++) {
+      if (Arrays.binarySearch(reached, 0, reachedCount, vertex) < 0) {
+        extendedRootIds[count++] = vertex;
+      }
+    }
+    extended.sortByKey(extendedRootIds, 0, count);
+    return Arrays.copyOf(extendedRootIds, count);
   }
 
-  private class Node<T> {
-    private T data;
-    private Node<T> next;
+  /**
+   * converts a list of ids back into their verticies, keeping the order of the ids.
+   *
+   * @param ids the ids of the verticies.
+   * @param count the number of ids to convert.
+   * @return the set of verticies, in the same order as the ids.
+   */
+  private Set<T> toVertexSet(int[] ids, int count) {
+    Set<T> set = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      set.add(interner.vertexOf(ids[i]));
+    }
+    return set;
+  }
 
-    private Node(T data) {
-      this.data = data;
-      next = null;
+  /**
+   * returns the ids of the root verticies, sorted in numerical order. The roots are found the
+   * first time they are asked for, and every later call and search reuses the same array.
+   *
+   * @return the ids of the root verticies, which must not be changed.
+   */
+  private int[] getRootIds() {
+    int[] current = rootIds;
+    if (current == null) {
+      synchronized (this) {
+        current = rootIds;
+        if (current == null) {
+          current = findRootIds();
+          rootIds = current;
+        }
+      }
     }
+    return current;
+  }
 
-    private T getData() {
-      return data;
+  /**
+   * finds the ids of the root verticies, sorted in numerical order.
+   *
+   * @return the ids of the root verticies.
+   */
+  private int[] findRootIds() {
+    int[] inDegreeRoots = getInDegreeRootIds();
+    // If the graph is an equivalence, add the equivalence class vertex to the set of roots.
+    if (!this.isEquivalence()) {
+      return inDegreeRoots;
     }
 
-    private Node<T> getNext() {
-      return next;
+    List<Integer> classVerticies = getEquivalenceClassVertexIds(toRootFlags(inDegreeRoots));
+    int[] rootIds = Arrays.copyOf(inDegreeRoots, inDegreeRoots.length + classVerticies.size());
+    int count = inDegreeRoots.length;
+    for (int vertex : classVerticies) {
+      rootIds[count++] = vertex;
     }
+    interner.sortByKey(rootIds, 0, count);
+    return rootIds;
+  }
 
-    private void setNext(Node<T> next) {
-      this.next = next;
+  /**
+   * returns the ids of the declared verticies that are not the destination of an edge from another
+   * vertex, sorted in numerical order. They are found the first time they are asked for, and a
+   * graph extended from this one carries them over.
+   *
+   * @return the ids of the verticies with no incoming edges, which must not be changed.
+   */
+  private int[] getInDegreeRootIds() {
+    int[] current = inDegreeRootIds;
+    if (current == null) {
+      synchronized (this) {
+        current = inDegreeRootIds;
+        if (current == null) {
+          current = findInDegreeRootIds();
+          inDegreeRootIds = current;
+        }
+      }
     }
+    return current;
   }
 
-  private Set<T> verticies;
-  private Set<Edge<T>> edges;
-  private Set<T> roots;
+  /**
+   * finds every vertex that is not the destination of an edge from another vertex, counting the
+   * in-degree of every vertex in a single pass over the edges.
+   *
+   * @return the ids of the verticies with no incoming edges, sorted in numerical order.
+   */
+  private int[] findInDegreeRootIds() {
+    int[] inDegree = new int[interner.size()];
+    for (int i = 0; i < edges.size(); i++) {
+      // Self loops do not stop a vertex from being a root
+      if (edges.source(i) != edges.destination(i)) {
+        inDegree[edges.destination(i)]++;
+      }
+    }
+
+    int[] rootIds = new int[declaredCount];
+    int count = 0;
+    for (int vertex = 0; vertex < declaredCount; vertex++) {
+      if (inDegree[vertex] == 0) {
+        rootIds[count++] = vertex;
+      }
+    }
+    interner.sortByKey(rootIds, 0, count);
+    return Arrays.copyOf(rootIds, count);
+  }
 
   /**
-   * Creates a new graph.
+   * flags the given verticies among the declared verticies.
    *
-   * @param verticies The set of verticies in the graph.
-   * @param edges The set of edges in the graph.
+   * @param rootIds the ids of the root verticies.
+   * @return the root flag of every declared vertex.
    */
-  public Graph(Set<T> verticies, Set<Edge<T>> edges) {
-    this.verticies = verticies;
-    this.edges = edges;
-    this.roots = new TreeSet<>(new NumericalComparator());
+  private boolean[] toRootFlags(int[] rootIds) {
+    boolean[] isRoot = new boolean[declaredCount];
+    for (int vertex : rootIds) {
+      isRoot[vertex] = true;
+    }
+    return isRoot;
   }
 
   /**
-   * takes the set of verticies and edge, and returns the root verticies of the graph.
+   * returns the ids of the verticies, sorted by the string order of their labels. They are sorted
+   * the first time they are asked for.
    *
-   * @return The set of root verticies.
+   * @return the ids in label order, which must not be changed.
    */
-  public Set<T> getRoots() {
-    // Looping through verticies and edges.
-    for (T vertex : this.verticies) {
-      boolean isRoot = true;
-      for (Edge<T> edge : this.edges) {
-        T source = edge.getSource();
-        T destination = edge.getDestination();
-        // Set isRoot to false if the vertex is a destination but not a source.
-        if ((vertex.equals(destination)) && (!(vertex.equals(source)))) {
-          isRoot = false;
+  private int[] getLabelOrder() {
+    int[] current = labelOrder;
+    if (current == null) {
+      synchronized (this) {
+        current = labelOrder;
+        if (current == null) {
+          current = interner.labelOrder();
+          labelOrder = current;
         }
       }
-      // If the vertex is a root, add it to the set of roots.
-      if (isRoot) {
-        roots.add(vertex);
+    }
+    return current;
+  }
+
+  /**
+   * returns an iterator over the verticies of the graph, in the string order of their labels.
+   *
+   * @return the iterator over the verticies.
+   */
+  public Iterator<T> labelOrderIterator() {
+    int[] order = getLabelOrder();
+    return new Iterator<T>() {
+      private int position;
+
+      @Override
+      public boolean hasNext() {
+        return position < order.length;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return interner.vertexOf(order[position++]);
       }
+    };
+  }
+
+  /**
+   * hands every edge of the graph to the given action, sorted by the string order of the label of
+   * its source and then of its destination. The edges leaving a vertex sit together in the edge
+   * store, so only the destinations of one vertex are sorted at a time, and no edge objects are
+   * made.
+   *
+   * @param action takes the source and the destination of each edge.
+   */
+  public void forEachEdgeInLabelOrder(BiConsumer<? super T, ? super T> action) {
+    int[] order = getLabelOrder();
+    int[] position = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      position[order[i]] = i;
     }
-    // If the graph is an equivalence, add the equivalence class vertex to the set of roots.
-    if (this.isEquivalence()) {
-      for (T vertex : this.getEquivalenceClassVertex()) {
-        roots.add(vertex);
+
+    int[] destinations = new int[16];
+    for (int source : order) {
+      int start = edges.start(source);
+      int count = edges.end(source) - start;
+      if (count > destinations.length) {
+        destinations = new int[Math.max(count, destinations.length * 2)];
+      }
+      // Sorting the positions of the destinations sorts them by label
+      for (int i = 0; i < count; i++) {
+        destinations[i] = position[edges.destination(start + i)];
+      }
+      Arrays.sort(destinations, 0, count);
+
+      T vertex = interner.vertexOf(source);
+      for (int i = 0; i < count; i++) {
+        action.accept(vertex, interner.vertexOf(order[destinations[i]]));
       }
     }
-    return roots;
-    // Maybe also have to add a way to filter out verticies without any outgoing edge (no source)
+  }
+
+  /**
+   * takes the set of verticies and edge, and returns the root verticies of the graph.
+   *
+   * @return The set of root verticies, which cannot be modified.
+   */
+  public Set<T> getRoots() {
+    Set<T> current = roots;
+    if (current == null) {
+      int[] rootIds = getRootIds();
+      current = Collections.unmodifiableSet(toVertexSet(rootIds, rootIds.length));
+      // Racing callers build equal sets, so whichever is kept does not matter
+      roots = current;
+    }
+    return current;
   }
 
   /**
@@ -203,19 +723,71 @@ public class Graph<T extends Comparable<T>> {
    */
   public List<T> getEquivalenceClassVertex() {
     List<T> vertexList = new ArrayList<>();
-    for (T vertex : this.verticies) {
-      // Turn the equivalence class set into a list, to allow indexing
-      List<T> equivalenceClass = new ArrayList<>(this.getEquivalenceClass(vertex));
-      if ((getEquivalenceClass(vertex).size() > 0) && (!roots.contains(vertex))) {
-        // Only adding the first vertex, the lowest number, to the list of roots
-        if (vertex == equivalenceClass.get(0)) {
-          vertexList.add(vertex);
-        }
+    for (int vertex : getEquivalenceClassVertexIds(toRootFlags(getInDegreeRootIds()))) {
+      vertexList.add(interner.vertexOf(vertex));
+    }
+    return vertexList;
+  }
+
+  /**
+   * finds the lowest numbered vertex of every equivalence class that is not already a root.
+   *
+   * @param isRoot the root flag of every declared vertex.
+   * @return the ids of the lowest numbered vertex of each equivalence class.
+   */
+  private List<Integer> getEquivalenceClassVertexIds(boolean[] isRoot) {
+    List<Integer> vertexList = new ArrayList<>();
+    EquivalencePartition partition = getPartition();
+    if (partition == null) {
+      return vertexList;
+    }
+
+    for (int equivalenceClass = 0; equivalenceClass < partition.classCount(); equivalenceClass++) {
+      // Only adding the first vertex, the lowest number, to the list of roots
+      int vertex = partition.representative(equivalenceClass);
+      if (vertex < declaredCount && !isRoot[vertex]) {
+        vertexList.add(vertex);
       }
     }
     return vertexList;
   }
 
+  /**
+   * returns the partition of the verticies into equivalence classes, building it the first time
+   * it is asked for.
+   *
+   * @return the partition, or null if the graph is not an equivalence relation.
+   */
+  private EquivalencePartition getPartition() {
+    if (!isEquivalence()) {
+      return null;
+    }
+
+    EquivalencePartition current = partition;
+    if (current == null) {
+      synchronized (this) {
+        current = partition;
+        if (current == null) {
+          current = new EquivalencePartition(interner.numericalOrder(), edges);
+          partition = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * checks if there is an edge from the given source to the given destination.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return boolean value of whether the edge exists.
+   */
+  private boolean hasEdge(int source, int destination) {
+    // The row of the source is sorted, so a binary search finds the edge without a second index
+    return edges.contains(source, destination);
+  }
+
   /**
    * checks if the vertex is both a source and destination, and returns a boolean value.
    *
@@ -223,15 +795,8 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value of whether the vertex is both a source and destination.
    */
   public boolean isInBothSourceAndDestination(T vertex) {
-    for (Edge<T> edge : this.edges) {
-      T source = edge.getSource();
-      T destination = edge.getDestination();
-      // Check if the vertex is both a source and destination
-      if (vertex.equals(source) && vertex.equals(destination)) {
-        return true;
-      }
-    }
-    return false;
+    int id = interner.idOf(vertex);
+    return id >= 0 && hasEdge(id, id);
   }
 
   /**
@@ -240,8 +805,18 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value of whether the graph is reflexive.
    */
   public boolean isReflexive() {
-    for (T vertex : this.verticies) {
-      if (!(isInBothSourceAndDestination(vertex))) {
+    return resolve(
+        RelationProperties::reflexive, this::checkReflexive, RelationProperties::withReflexive);
+  }
+
+  /**
+   * checks if every vertex has an edge to itself, by scanning the graph once.
+   *
+   * @return boolean value whether the graph is reflexive.
+   */
+  private boolean checkReflexive() {
+    for (int vertex = 0; vertex < declaredCount; vertex++) {
+      if (!hasEdge(vertex, vertex)) {
         return false;
       }
     }
@@ -256,15 +831,9 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value of whether the graph is symmetric.
    */
   public boolean isSourceAndDestinationSymmetric(T source, T destination) {
-    for (Edge<T> edge : this.edges) {
-      T source1 = edge.getSource();
-      T destination1 = edge.getDestination();
-      // If source if equal to destination and destination is equal to source, return true
-      if (source.equals(destination1) && destination.equals(source1)) {
-        return true;
-      }
-    }
-    return false;
+    int sourceId = interner.idOf(source);
+    int destinationId = interner.idOf(destination);
+    return sourceId >= 0 && destinationId >= 0 && hasEdge(destinationId, sourceId);
   }
 
   /**
@@ -273,11 +842,19 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value of whether the graph is symmetric.
    */
   public boolean isSymmetric() {
-    for (Edge<T> edge : this.edges) {
-      T source = edge.getSource();
-      T destination = edge.getDestination();
-      // use the isSourceAndDestinationSymmetric method to check if the graph is symmetric
-      if (!(isSourceAndDestinationSymmetric(source, destination))) {
+    return resolve(
+        RelationProperties::symmetric, this::checkSymmetric, RelationProperties::withSymmetric);
+  }
+
+  /**
+   * checks if every edge has an edge going back the other way, by scanning the graph once.
+   *
+   * @return boolean value whether the graph is symmetric.
+   */
+  private boolean checkSymmetric() {
+    for (int i = 0; i < edges.size(); i++) {
+      // every edge needs an edge going back the other way
+      if (!hasEdge(edges.destination(i), edges.source(i))) {
         return false;
       }
     }
@@ -293,15 +870,9 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether the source and destination are connected by the same edge.
    */
   public boolean isInSourceAndDestination(T source, T destination) {
-    for (Edge<T> edge : this.edges) {
-      T source1 = edge.getSource();
-      T destination1 = edge.getDestination();
-      // If source and destination are connected by the same edge, return true
-      if (source.equals(source1) && destination.equals(destination1)) {
-        return true;
-      }
-    }
-    return false;
+    int sourceId = interner.idOf(source);
+    int destinationId = interner.idOf(destination);
+    return sourceId >= 0 && destinationId >= 0 && hasEdge(sourceId, destinationId);
   }
 
   /**
@@ -312,14 +883,31 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether the source and destination are transitive.
    */
   public boolean isSourceAndDestinationTransitive(T source, T destination) {
-    for (Edge<T> edge : this.edges) {
-      T source1 = edge.getSource();
-      T destination1 = edge.getDestination();
+    int sourceId = interner.idOf(source);
+    int destinationId = interner.idOf(destination);
+    if (destinationId < 0) {
+      // verticies outside of the graph have no edges to follow
+      return true;
+    }
+    if (sourceId < 0) {
+      // a source outside of the graph reaches nothing, so the destination must lead nowhere
+      return edges.start(destinationId) == edges.end(destinationId);
+    }
+    return isTransitiveEdge(sourceId, destinationId);
+  }
+
+  /**
+   * checks whether every edge leaving the destination is also reachable directly from the source.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return boolean value whether the source and destination are transitive.
+   */
+  private boolean isTransitiveEdge(int source, int destination) {
+    for (int i = edges.start(destination); i < edges.end(destination); i++) {
       // check whether the source vertex has an edge to the new destination vertex
-      if (destination.equals(source1)) {
-        if (!(isInSourceAndDestination(source, destination1))) {
-          return false;
-        }
+      if (!hasEdge(source, edges.destination(i))) {
+        return false;
       }
     }
     return true;
@@ -331,14 +919,11 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether the graph is transitive.
    */
   public boolean isTransitive() {
-    for (Edge<T> edge : this.edges) {
-      T source = edge.getSource();
-      T destination = edge.getDestination();
-      if (!(isSourceAndDestinationTransitive(source, destination))) {
-        return false;
-      }
-    }
-    return true;
+    // Compare successor sets a word at a time, spread across the fork join pool
+    return resolve(
+        RelationProperties::transitive,
+        () -> TransitivityChecker.isTransitive(edges),
+        RelationProperties::withTransitive);
   }
 
   /**
@@ -350,15 +935,7 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether there exists an edge from the destination to the source.
    */
   public boolean reverseIsInSourceAndDestination(T source, T destination) {
-    for (Edge<T> edge : this.edges) {
-      T source1 = edge.getSource();
-      T destination1 = edge.getDestination();
-      // If there exists an edge from the destination to the source, return true
-      if (source.equals(destination1) && destination.equals(source1)) {
-        return true;
-      }
-    }
-    return false;
+    return isSourceAndDestinationSymmetric(source, destination);
   }
 
   /**
@@ -367,15 +944,24 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether the graph is antisymmetric.
    */
   public boolean isAntiSymmetric() {
-    for (Edge<T> edge : this.edges) {
-      T source = edge.getSource();
-      T destination = edge.getDestination();
-      // check if the source and destination are connected by an edge
-      if (isInSourceAndDestination(source, destination)) {
-        // check if there is an edge from the destination to the source
-        if ((reverseIsInSourceAndDestination(source, destination))) {
-          return false;
-        }
+    return resolve(
+        RelationProperties::antiSymmetric,
+        this::checkAntiSymmetric,
+        RelationProperties::withAntiSymmetric);
+  }
+
+  /**
+   * checks if no edge has an edge going back the other way, by scanning the graph once.
+   *
+   * @return boolean value whether the graph is antisymmetric.
+   */
+  private boolean checkAntiSymmetric() {
+    for (int i = 0; i < edges.size(); i++) {
+      int source = edges.source(i);
+      int destination = edges.destination(i);
+      // an edge back from the destination to the source breaks antisymmetry
+      if (hasEdge(destination, source)) {
+        return false;
       }
     }
     return true;
@@ -387,12 +973,107 @@ public class Graph<T extends Comparable<T>> {
    * @return boolean value whether the graph is an equivalence relation.
    */
   public boolean isEquivalence() {
+    Boolean known = properties.get().equivalence();
+    if (known != null) {
+      return known;
+    }
     if (this.isReflexive() && this.isSymmetric() && this.isTransitive()) {
       return true;
     }
     return false;
   }
 
+  /**
+   * computes every relation property of the graph that is not known yet, and returns them all.
+   *
+   * @return the relation properties of the graph.
+   */
+  public RelationProperties getRelationProperties() {
+    isReflexive();
+    isSymmetric();
+    isTransitive();
+    isAntiSymmetric();
+    return properties.get();
+  }
+
+  /**
+   * estimates the heap used by the graph, including the indices it has built so far. The parts
+   * that never change are measured once, so later estimates are cheap.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimateMemoryBytes() {
+    long bytes = fixedBytes;
+    if (bytes < 0) {
+      bytes = interner.estimatedBytes() + edges.estimatedBytes();
+      fixedBytes = bytes;
+    }
+
+    // The indices built on demand are added as they appear
+    EquivalencePartition currentPartition = partition;
+    if (currentPartition != null) {
+      bytes += currentPartition.estimatedBytes();
+    }
+    int[] currentInDegreeRootIds = inDegreeRootIds;
+    if (currentInDegreeRootIds != null) {
+      bytes += 16 + (long) currentInDegreeRootIds.length * Integer.BYTES;
+    }
+    int[] currentRootIds = rootIds;
+    if (currentRootIds != null && currentRootIds != currentInDegreeRootIds) {
+      bytes += 16 + (long) currentRootIds.length * Integer.BYTES;
+    }
+    int[] currentLabelOrder = labelOrder;
+    if (currentLabelOrder != null) {
+      bytes += 16 + (long) currentLabelOrder.length * Integer.BYTES;
+    }
+    return bytes;
+  }
+
+  /**
+   * returns the relation properties computed so far, without computing any more.
+   *
+   * @return the known relation properties.
+   */
+  RelationProperties knownRelationProperties() {
+    return properties.get();
+  }
+
+  VertexInterner<T> interner() {
+    return interner;
+  }
+
+  int declaredCount() {
+    return declaredCount;
+  }
+
+  EdgeStore edgeStore() {
+    return edges;
+  }
+
+  /**
+   * returns a relation property from the cache, computing and caching it the first time it is
+   * asked for.
+   *
+   * @param cached reads the property from the cache, giving null when it is not known yet.
+   * @param check computes the property from the graph.
+   * @param store returns a copy of the cache with the property set.
+   * @return boolean value of the property.
+   */
+  private boolean resolve(
+      Function<RelationProperties, Boolean> cached,
+      BooleanSupplier check,
+      BiFunction<RelationProperties, Boolean, RelationProperties> store) {
+    Boolean known = cached.apply(properties.get());
+    if (known != null) {
+      return known;
+    }
+
+    boolean value = check.getAsBoolean();
+    // Merge into whatever other threads have cached in the meantime, instead of overwriting it
+    properties.updateAndGet(current -> store.apply(current, value));
+    return value;
+  }
+
   /**
    * goes through all verticies, and returns a numerically ordered set of verticies related to the
    * given vertex.
@@ -401,15 +1082,15 @@ public class Graph<T extends Comparable<T>> {
    * @return a numerically ordered set of verticies related to the given vertex.
    */
   public Set<T> equivalenceList(T vertex) {
-    // Create a new set to store the equivalence list in numerical order
-    Set<T> equivalenceList = new TreeSet<>(new NumericalComparator());
-    for (Edge<T> edge : this.edges) {
-      T source1 = edge.getSource();
-      T destination1 = edge.getDestination();
-      // If the vertex is a source, add the destination to the equivalence list
-      if (vertex.equals(source1)) {
-        equivalenceList.add(destination1);
-      }
+    int id = interner.idOf(vertex);
+    if (id < 0) {
+      return new LinkedHashSet<>();
+    }
+
+    // The row of the vertex in the edge store is already in numerical order
+    Set<T> equivalenceList = new LinkedHashSet<>();
+    for (int i = edges.start(id); i < edges.end(id); i++) {
+      equivalenceList.add(interner.vertexOf(edges.destination(i)));
     }
     return equivalenceList;
   }
@@ -423,10 +1104,70 @@ public class Graph<T extends Comparable<T>> {
   public Set<T> getEquivalenceClass(T vertex) {
     Set<T> equivalenceClass = new HashSet<T>();
     // return empty set if not equivalence relation
-    if (!(this.isEquivalence())) {
+    EquivalencePartition partition = getPartition();
+    int id = interner.idOf(vertex);
+    if (partition == null || id < 0) {
       return equivalenceClass;
     }
-    return this.equivalenceList(vertex);
+    return new EquivalenceClass(partition, partition.classOf(id));
+  }
+
+  /**
+   * checks whether two verticies are in the same equivalence class.
+   *
+   * @param first the first vertex.
+   * @param second the second vertex.
+   * @return boolean value whether the graph is an equivalence relation, and both verticies are in
+   *     the same equivalence class.
+   */
+  public boolean isInSameEquivalenceClass(T first, T second) {
+    EquivalencePartition partition = getPartition();
+    int firstId = interner.idOf(first);
+    int secondId = interner.idOf(second);
+    if (partition == null || firstId < 0 || secondId < 0) {
+      return false;
+    }
+    return partition.classOf(firstId) == partition.classOf(secondId);
+  }
+
+  /**
+   * takes a queue from the pool of queues left behind by earlier searches, or makes a new one.
+   *
+   * @return an empty queue.
+   */
+  private IntQueue borrowQueue() {
+    IntQueue queue = queuePool.poll();
+    return queue == null ? new IntQueue() : queue;
+  }
+
+  /**
+   * empties a queue and puts it back in the pool, keeping its buffer for the next search.
+   *
+   * @param queue the queue to give back.
+   */
+  private void returnQueue(IntQueue queue) {
+    queue.clear();
+    queuePool.offer(queue);
+  }
+
+  /**
+   * takes a stack from the pool of stacks left behind by earlier searches, or makes a new one.
+   *
+   * @return an empty stack.
+   */
+  private IntStack borrowStack() {
+    IntStack stack = stackPool.poll();
+    return stack == null ? new IntStack() : stack;
+  }
+
+  /**
+   * empties a stack and puts it back in the pool, keeping its array for the next search.
+   *
+   * @param stack the stack to give back.
+   */
+  private void returnStack(IntStack stack) {
+    stack.clear();
+    stackPool.offer(stack);
   }
 
   /**
@@ -435,74 +1176,89 @@ public class Graph<T extends Comparable<T>> {
    * @return the list of verticies, as searched through by the BreadthFirstSearch algorithm.
    */
   public List<T> iterativeBreadthFirstSearch() {
-    if (verticies.isEmpty()) {
+    if (interner.size() == 0) {
       return new ArrayList<>();
     }
 
-    Set<T> temp = this.getRoots();
-    List<T> tempRoots = new ArrayList<>(temp);
-    Set<T> visited = new HashSet<>();
-    // Create a custom LinkedList, and queue using this custom Linkedlist
-    CustomLinkedList<T> linkedList = new CustomLinkedList<>();
-    CustomQueue<T> queue = new CustomQueue<>();
+    int[] tempRoots = getRootIds();
+    boolean[] visited = new boolean[edges.vertexCount()];
+    // Borrow a ring buffer queue that an earlier search has already grown
+    List<T> searchOrder = new ArrayList<>(edges.vertexCount());
+    IntQueue queue = borrowQueue();
 
     // Perform the queue operation for every root vertex
-    for (int i = 0; i < tempRoots.size(); i++) {
-      T startVertex = tempRoots.get(i);
-      visited.add(startVertex);
+    for (int i = 0; i < tempRoots.length; i++) {
+      int startVertex = tempRoots[i];
+      visited[startVertex] = true;
       queue.enqueue(startVertex);
 
-      // While the queue is not empty, dequeue the first element, and add it to the linkedList
+      // While the queue is not empty, dequeue the first element, and add it to the search order
       while (!queue.isEmpty()) {
-        T currentVertex = queue.dequeue();
-        linkedList.add(currentVertex);
-        Set<T> adjacentVertices = getAdjacentVertices(currentVertex);
-
-        // Use the adjacent verticies to add to the queue
-        for (T adjacentVertex : adjacentVertices) {
-          if (!visited.contains(adjacentVertex)) {
-            visited.add(adjacentVertex);
+        int currentVertex = queue.dequeue();
+        searchOrder.add(interner.vertexOf(currentVertex));
+
+        // Use the adjacent verticies from the index to add to the queue, in numerical order
+        for (int j = edges.start(currentVertex); j < edges.end(currentVertex); j++) {
+          int adjacentVertex = edges.destination(j);
+          if (!visited[adjacentVertex]) {
+            visited[adjacentVertex] = true;
             queue.enqueue(adjacentVertex);
           }
         }
       }
     }
-    return linkedList.toList();
+    returnQueue(queue);
+    return searchOrder;
   }
 
   /**
-   * returns the set of adjacent verticies of the given vertex.
+   * returns an iterator over a lazy BreadthFirstSearch, which visits the verticies in the same
+   * order as {@link #iterativeBreadthFirstSearch()} but only as far as the iterator is advanced.
    *
-   * @param vertex the vertex to find the adjacent verticies of.
-   * @return the set of adjacent verticies of the given vertex.
+   * @return the iterator over the verticies, in the order they are searched.
    */
-  private Set<T> getAdjacentVertices(T vertex) {
-    // make the set of adjacent veticies, be in numerical order
-    Set<T> adjacentVertices = new TreeSet<>(new NumericalComparator());
-    for (Edge<T> edge : edges) {
-      // If the vertex is a source, add the destination to the set of adjacent verticies
-      if (edge.getSource().equals(vertex)) {
-        adjacentVertices.add(edge.getDestination());
-      }
-    }
-    return adjacentVertices;
+  public Iterator<T> breadthFirstIterator() {
+    return Spliterators.iterator(new LazyBreadthFirstSearch());
   }
 
   /**
-   * returns the set of verticies that are adjacent to the given vertex, in reverse numerical order.
+   * returns a sequential stream over a lazy BreadthFirstSearch, which visits the verticies in the
+   * same order as {@link #iterativeBreadthFirstSearch()}. Short circuiting operations, such as
+   * {@link Stream#limit(long)} or {@link Stream#findFirst()}, stop the search early.
    *
-   * @param vertex the vertex to find the adjacent verticies of.
-   * @return the set of verticies that are adjacent to the given vertex, in reverse numerical order.
+   * @return the stream of verticies, in the order they are searched.
    */
-  private Set<T> getNeighborsReverse(T vertex) {
-    // Get neighbors of a given vertex, and put them in revere numerical order
-    Set<T> neighbors = new TreeSet<>(new ReverseNumericalComparator());
-    for (Edge<T> edge : edges) {
-      if (edge.getSource().equals(vertex)) {
-        neighbors.add(edge.getDestination());
-      }
+  public Stream<T> breadthFirstStream() {
+    return StreamSupport.stream(new LazyBreadthFirstSearch(), false);
+  }
+
+  /**
+   * performs a parallel BreadthFirstSearch, expanding each level across the fork join pool, and
+   * returns the searched list of verticies in the same order as the iterative BreadthFirstSearch.
+   *
+   * @return the list of verticies, as searched through by the BreadthFirstSearch algorithm.
+   */
+  public List<T> parallelBreadthFirstSearch() {
+    List<T> searchOrder = new ArrayList<>(edges.vertexCount());
+    parallelBreadthFirstSearch(searchOrder::add);
+    return searchOrder;
+  }
+
+  /**
+   * performs a parallel BreadthFirstSearch, and hands the verticies to the visitor in the same
+   * order as the iterative BreadthFirstSearch. Only the ids of the search order are kept, and each
+   * is turned into its vertex as it is handed over.
+   *
+   * @param visitor the visitor to hand each vertex to, in the order they are searched.
+   */
+  public void parallelBreadthFirstSearch(Consumer<? super T> visitor) {
+    if (interner.size() == 0) {
+      return;
+    }
+
+    for (int vertex : ParallelBreadthFirstSearch.search(edges, getRootIds())) {
+      visitor.accept(interner.vertexOf(vertex));
     }
-    return neighbors;
   }
 
   /**
@@ -511,35 +1267,34 @@ public class Graph<T extends Comparable<T>> {
    * @return the list of verticies, as searched through by the DepthFirstSearch algorithm.
    */
   public List<T> iterativeDepthFirstSearch() {
-    // Create a stack implementation using the customLinkedList
-    List<T> visited = new ArrayList<>();
-    Set<T> visitedSet = new HashSet<>();
-    CustomStack<T> stack = new CustomStack<>();
+    List<T> visited = new ArrayList<>(edges.vertexCount());
+    boolean[] visitedSet = new boolean[edges.vertexCount()];
 
-    if (verticies.isEmpty()) {
+    if (interner.size() == 0) {
       return visited;
     }
 
-    Set<T> temp = this.getRoots();
-    // convert the roots Set into an ArrayList
-    List<T> tempRoots = new ArrayList<>(temp);
+    // Borrow an array backed stack that an earlier search has already grown
+    IntStack stack = borrowStack();
+
+    int[] tempRoots = getRootIds();
 
     // Perform the stack operation for every root vertex
-    for (int i = 0; i < tempRoots.size(); i++) {
-      T startVertex = tempRoots.get(i);
+    for (int i = 0; i < tempRoots.length; i++) {
+      int startVertex = tempRoots[i];
       stack.push(startVertex);
 
       // While the stack is not empty, pop the current vertex, and add it to the visited list
       while (!stack.isEmpty()) {
-        T currentVertex = stack.pop();
-        if (!visitedSet.contains(currentVertex)) {
-          visited.add(currentVertex);
-          visitedSet.add(currentVertex);
-          Set<T> neighbors = getNeighborsReverse(currentVertex);
-
-          // Push the unvisited neighbors onto the stack to continue iterating
-          for (T neighbor : neighbors) {
-            if (!visitedSet.contains(neighbor)) {
+        int currentVertex = stack.pop();
+        if (!visitedSet[currentVertex]) {
+          visited.add(interner.vertexOf(currentVertex));
+          visitedSet[currentVertex] = true;
+
+          // Push the unvisited neighbors in reverse numerical order, so the lowest is popped first
+          for (int j = edges.end(currentVertex) - 1; j >= edges.start(currentVertex); j--) {
+            int neighbor = edges.destination(j);
+            if (!visitedSet[neighbor]) {
               stack.push(neighbor);
             }
           }
@@ -547,67 +1302,80 @@ public class Graph<T extends Comparable<T>> {
       }
     }
 
+    returnStack(stack);
     return visited;
   }
 
   /**
-   * performs a recursive BreadthFirstSearch to update the linkedList.
+   * returns an iterator over a lazy DepthFirstSearch, which visits the verticies in the same order
+   * as {@link #iterativeDepthFirstSearch()} but only as far as the iterator is advanced.
    *
-   * @param roots roots of the vertex.
+   * @return the iterator over the verticies, in the order they are searched.
+   */
+  public Iterator<T> depthFirstIterator() {
+    return Spliterators.iterator(new LazyDepthFirstSearch());
+  }
+
+  /**
+   * returns a sequential stream over a lazy DepthFirstSearch, which visits the verticies in the
+   * same order as {@link #iterativeDepthFirstSearch()}. Short circuiting operations, such as
+   * {@link Stream#limit(long)} or {@link Stream#findFirst()}, stop the search early.
+   *
+   * @return the stream of verticies, in the order they are searched.
+   */
+  public Stream<T> depthFirstStream() {
+    return StreamSupport.stream(new LazyDepthFirstSearch(), false);
+  }
+
+  /**
+   * performs a recursive BreadthFirstSearch to update the search order. The call on the next root
+   * is a tail call, so it is run as a loop that never grows the thread stack.
+   *
+   * @param roots ids of the root verticies.
    * @param index index of the roots array.
    * @param queue queue of verticies to visit.
-   * @param visited visited set of verticies of the graph.
-   * @param linkedList linkedList of the vertex.
+   * @param visited visited flags of the verticies of the graph.
+   * @param visitor the visitor to hand each vertex to, in the order they are searched.
    */
   private void recursivebfs(
-      List<T> roots,
-      int index,
-      CustomQueue<T> queue,
-      Set<T> visited,
-      CustomLinkedList<T> linkedList) {
-    if (index >= roots.size()) {
-      return;
+      int[] roots, int index, IntQueue queue, boolean[] visited, Consumer<? super T> visitor) {
+    while (index < roots.length) {
+      // process the root one at a time
+      int root = roots[index];
+      queue.enqueue(root);
+      // Use the helper processQueue method, to actually process the queue and add values
+      processQueue(queue, visited, visitor);
+
+      // Move on to the next root, in place of the recursive call
+      index++;
     }
-
-    // process the root one at a time
-    T root = roots.get(index);
-    queue.enqueue(root);
-    // Use the helper processQueue method, to actually process the queue and add values
-    processQueue(queue, visited, linkedList);
-
-    // Calling recursively
-    recursivebfs(roots, index + 1, queue, visited, linkedList);
   }
 
   /**
-   * helper method to process the queue and add values to the linkedList.
+   * helper method to process the queue and add values to the search order. Each step recurses on
+   * the rest of the queue as a tail call, so the steps are run as a loop and only the queue grows.
    *
    * @param queue queue of verticies to visit.
-   * @param visited visited set of verticies of the graph.
-   * @param linkedList linkedList of the vertex.
+   * @param visited visited flags of the verticies of the graph.
+   * @param visitor the visitor to hand each vertex to, in the order they are searched.
    */
-  private void processQueue(CustomQueue<T> queue, Set<T> visited, CustomLinkedList<T> linkedList) {
-    if (queue.isEmpty()) {
-      return;
-    }
-
-    // dequeue the first element, and add it to the linkedList
-    T currentVertex = queue.dequeue();
-    if (!visited.contains(currentVertex)) {
-      visited.add(currentVertex);
-      linkedList.add(currentVertex);
-
-      // Use the adjacent vertices to add to the queue
-      Set<T> adjacentVertices = getAdjacentVertices(currentVertex);
-      for (T adjacentVertex : adjacentVertices) {
-        if (!visited.contains(adjacentVertex)) {
-          queue.enqueue(adjacentVertex);
+  private void processQueue(IntQueue queue, boolean[] visited, Consumer<? super T> visitor) {
+    while (!queue.isEmpty()) {
+      // dequeue the first element, and add it to the search order
+      int currentVertex = queue.dequeue();
+      if (!visited[currentVertex]) {
+        visited[currentVertex] = true;
+        visitor.accept(interner.vertexOf(currentVertex));
+
+        // Use the adjacent vertices from the index to add to the queue
+        for (int j = edges.start(currentVertex); j < edges.end(currentVertex); j++) {
+          int adjacentVertex = edges.destination(j);
+          if (!visited[adjacentVertex]) {
+            queue.enqueue(adjacentVertex);
+          }
         }
       }
     }
-
-    // recursive call
-    processQueue(queue, visited, linkedList);
   }
 
   /**
@@ -617,62 +1385,69 @@ public class Graph<T extends Comparable<T>> {
    *     algorithm.
    */
   public List<T> recursiveBreadthFirstSearch() {
-    if (verticies.isEmpty()) {
-      return new ArrayList<>();
-    }
-
-    Set<T> temp = getRoots();
-    List<T> tempRoots = new ArrayList<>(temp);
-
-    // Create a custom LinkedList, and queue using this custom Linkedlist
-    Set<T> visited = new HashSet<>();
-    CustomLinkedList<T> linkedList = new CustomLinkedList<>();
-    CustomQueue<T> queue = new CustomQueue<>();
-
-    // Call the recursiveBFS method to perform the recursive BFS
-    recursivebfs(tempRoots, 0, queue, visited, linkedList);
-
-    return linkedList.toList();
+    List<T> searchOrder = new ArrayList<>(edges.vertexCount());
+    recursiveBreadthFirstSearch(searchOrder::add);
+    return searchOrder;
   }
 
   /**
-   * returns the set of verticies that are adjacent to the given vertex, in numerical order.
+   * performs a recursive BreadthFirstSearch, and hands each vertex to the visitor as it is
+   * searched, instead of gathering them into a list.
    *
-   * @param vertex the vertex to find the adjacent verticies of.
-   * @return the set of verticies that are adjacent to the given vertex, in numerical order.
+   * @param visitor the visitor to hand each vertex to, in the order they are searched.
    */
-  private Set<T> getNeighbors(T vertex) {
-    // create a set of neighbors, to add them in numerical order
-    Set<T> neighbors = new TreeSet<>(new NumericalComparator());
-
-    for (Edge<T> edge : edges) {
-      if (edge.getSource().equals(vertex)) {
-        neighbors.add(edge.getDestination());
-      }
+  public void recursiveBreadthFirstSearch(Consumer<? super T> visitor) {
+    if (interner.size() == 0) {
+      return;
     }
 
-    return neighbors;
+    int[] tempRoots = getRootIds();
+
+    // Borrow a ring buffer queue that an earlier search has already grown
+    boolean[] visited = new boolean[edges.vertexCount()];
+    IntQueue queue = borrowQueue();
+
+    // Call the recursiveBFS method to perform the recursive BFS
+    recursivebfs(tempRoots, 0, queue, visited, visitor);
+
+    returnQueue(queue);
   }
 
   /**
-   * performs a recursive DepthFirstSearch to update the visited list.
+   * performs a recursive DepthFirstSearch to update the visited list. The recursion is kept on an
+   * explicit stack of frames on the heap, where each frame holds a vertex and the position of the
+   * next neighbor to look at, so deep graphs never overflow the thread stack.
    *
-   * @param vertex vertex to start the DFS from.
-   * @param visited visited list of verticies.
-   * @param visitedSet visited set of verticies.
+   * @param vertex id of the vertex to start the DFS from.
+   * @param visitor the visitor to hand each vertex to, in the order they are visited.
+   * @param visitedSet visited flags of the verticies.
+   * @param frames the frame stack, empty on entry and on return.
    */
-  private void recursivedfs(T vertex, List<T> visited, Set<T> visitedSet) {
-    visited.add(vertex);
-    visitedSet.add(vertex);
-
-    // Create a set of neighbors, to add them in reverse numerical order
-    Set<T> neighbors;
-    neighbors = getNeighbors(vertex);
+  private void recursivedfs(
+      int vertex, Consumer<? super T> visitor, boolean[] visitedSet, FrameStack frames) {
+    visitor.accept(interner.vertexOf(vertex));
+    visitedSet[vertex] = true;
+    frames.push(vertex, edges.start(vertex));
+
+    while (!frames.isEmpty()) {
+      int current = frames.topVertex();
+      int position = frames.topPosition();
+
+      // Using the neighbors in numerical order, find the next one that is not visited yet
+      while (position < edges.end(current) && visitedSet[edges.destination(position)]) {
+        position++;
+      }
 
-    // Using the neighbors, recursively call the recursiveDFS method
-    for (T neighbor : neighbors) {
-      if (!visitedSet.contains(neighbor)) {
-        recursivedfs(neighbor, visited, visitedSet);
+      if (position == edges.end(current)) {
+        // Every neighbor is done, so return from this frame
+        frames.pop();
+      } else {
+        // Remember where to carry on, then descend into the neighbor as the recursive call would
+        int neighbor = edges.destination(position);
+        frames.setTopPosition(position + 1);
+        visitor.accept(interner.vertexOf(neighbor));
+        visitedSet[neighbor] = true;
+        frames.push(neighbor, edges.start(neighbor));
       }
     }
   }
@@ -685,21 +1460,30 @@ public class Graph<T extends Comparable<T>> {
    */
   public List<T> recursiveDepthFirstSearch() {
     List<T> visited = new ArrayList<>();
-    Set<T> visitedSet = new HashSet<>();
+    recursiveDepthFirstSearch(visited::add);
+    return visited;
+  }
 
-    if (verticies.isEmpty()) {
-      return visited;
+  /**
+   * performs a recursive DepthFirstSearch, and hands each vertex to the visitor as it is visited,
+   * instead of gathering them into a list.
+   *
+   * @param visitor the visitor to hand each vertex to, in the order they are visited.
+   */
+  public void recursiveDepthFirstSearch(Consumer<? super T> visitor) {
+    boolean[] visitedSet = new boolean[edges.vertexCount()];
+
+    if (interner.size() == 0) {
+      return;
     }
 
-    Set<T> temp = getRoots();
-    List<T> tempRoots = new ArrayList<>(temp);
+    int[] tempRoots = getRootIds();
+    FrameStack frames = new FrameStack();
 
     // For every root vertex, call the recursiveDFS method
-    for (T startVertex : tempRoots) {
+    for (int startVertex : tempRoots) {
       // Call the recursiveDFS method to perform the recursive DFS
-      recursivedfs(startVertex, visited, visitedSet);
+      recursivedfs(startVertex, visitor, visitedSet, frames);
     }
-
-    return visited;
   }
 }
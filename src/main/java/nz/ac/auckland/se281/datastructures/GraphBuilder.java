@@ -0,0 +1,108 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Builds a graph one vertex and edge at a time, without collecting the verticies and edges into
+ * sets first. Every vertex named by an edge is also a vertex of the graph. A builder builds a
+ * single graph.
+ *
+ * @param <T> The type of each vertex, that have a total ordering.
+ */
+public final class GraphBuilder<T extends Comparable<T>> {
+
+  private final VertexInterner<T> interner = new VertexInterner<>();
+  private long[] edges;
+  private int edgeCount;
+  private boolean built;
+
+  /** creates an empty builder. */
+  public GraphBuilder() {
+    this(16);
+  }
+
+  /**
+   * creates an empty builder with room for the given number of edges.
+   *
+   * @param expectedEdges the number of edges expected to be added.
+   */
+  public GraphBuilder(int expectedEdges) {
+    edges = new long[Math.max(16, expectedEdges)];
+  }
+
+  /**
+   * adds a vertex to the graph, if it is not already there.
+   *
+   * @param vertex the vertex to add.
+   * @return this builder.
+   */
+  public GraphBuilder<T> addVertex(T vertex) {
+    checkNotBuilt();
+    interner.intern(vertex);
+    return this;
+  }
+
+  /**
+   * adds a vertex to the graph, if it is not already there, and returns its id. Ids are handed out
+   * from zero, in the order the verticies are first added.
+   *
+   * @param vertex the vertex to add.
+   * @return the id of the vertex.
+   */
+  public int vertexId(T vertex) {
+    checkNotBuilt();
+    return interner.intern(vertex);
+  }
+
+  /**
+   * adds an edge to the graph, along with its source and destination verticies. Repeated edges
+   * are dropped when the graph is built.
+   *
+   * @param source the source vertex of the edge.
+   * @param destination the destination vertex of the edge.
+   * @return this builder.
+   */
+  public GraphBuilder<T> addEdge(T source, T destination) {
+    checkNotBuilt();
+    return addEdge(interner.intern(source), interner.intern(destination));
+  }
+
+  /**
+   * adds an edge between two verticies that have already been added, by their ids.
+   *
+   * @param sourceId the id of the source vertex, as given by {@link #vertexId(Comparable)}.
+   * @param destinationId the id of the destination vertex.
+   * @return this builder.
+   */
+  public GraphBuilder<T> addEdge(int sourceId, int destinationId) {
+    checkNotBuilt();
+    if (sourceId < 0 || sourceId >= interner.size()) {
+      throw new IllegalArgumentException("Unknown vertex id " + sourceId);
+    }
+    if (destinationId < 0 || destinationId >= interner.size()) {
+      throw new IllegalArgumentException("Unknown vertex id " + destinationId);
+    }
+    if (edgeCount == edges.length) {
+      edges = Arrays.copyOf(edges, edgeCount * 2);
+    }
+    edges[edgeCount++] = EdgeStore.pack(sourceId, destinationId);
+    return this;
+  }
+
+  /**
+   * builds the graph from the verticies and edges added so far.
+   *
+   * @return the graph.
+   */
+  public Graph<T> build() {
+    checkNotBuilt();
+    built = true;
+    return new Graph<>(interner, interner.size(), new EdgeStore(edges, edgeCount, interner));
+  }
+
+  private void checkNotBuilt() {
+    if (built) {
+      throw new IllegalStateException("The graph has already been built");
+    }
+  }
+}
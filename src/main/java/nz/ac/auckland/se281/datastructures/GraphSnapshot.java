@@ -0,0 +1,260 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * Writes a graph as a compact binary snapshot, and reads it back without parsing, sorting or
+ * copying anything. All numbers are big endian, and the snapshot is laid out as:
+ *
+ * <ol>
+ *   <li>the vertex count, declared vertex count and edge count, as ints
+ *   <li>the reflexive, symmetric, transitive and antisymmetric properties, as one byte each that
+ *       is 0 when not computed, 1 when false and 2 when true
+ *   <li>the numerical sort key of every vertex, as ints
+ *   <li>the ids of the verticies whose labels are not numbers, as a bit set in longs
+ *   <li>the label table, as the byte offset of every label followed by the end offset, then the
+ *       UTF-8 bytes of every label
+ *   <li>the packed edges, grouped and sorted into rows, as longs
+ *   <li>the start offset of the row of every vertex followed by the edge count, as ints
+ * </ol>
+ */
+public final class GraphSnapshot {
+
+  /** The labels of a snapshot, decoded from the label table each time one is asked for. */
+  private static final class Labels extends AbstractList<String> implements RandomAccess {
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+
+    private Labels(IntBuffer offsets, ByteBuffer bytes) {
+      this.offsets = offsets;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public String get(int id) {
+      int start = offsets.get(id);
+      byte[] label = new byte[offsets.get(id + 1) - start];
+      bytes.get(start, label);
+      return new String(label, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+      return offsets.limit() - 1;
+    }
+  }
+
+  private GraphSnapshot() {}
+
+  /**
+   * writes a snapshot of the given graph, along with the relation properties computed so far.
+   *
+   * @param graph the graph to write.
+   * @param out the stream to write to, which is flushed but not closed.
+   * @throws IOException if the snapshot cannot be written.
+   */
+  public static void write(Graph<String> graph, OutputStream out) throws IOException {
+    VertexInterner<String> interner = graph.interner();
+    EdgeStore edges = graph.edgeStore();
+    RelationProperties known = graph.knownRelationProperties();
+    int vertexCount = interner.size();
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(vertexCount);
+    data.writeInt(graph.declaredCount());
+    data.writeInt(edges.size());
+    data.writeByte(encode(known.reflexive()));
+    data.writeByte(encode(known.symmetric()));
+    data.writeByte(encode(known.transitive()));
+    data.writeByte(encode(known.antiSymmetric()));
+
+    for (int id = 0; id < vertexCount; id++) {
+      data.writeInt(interner.sortKey(id));
+    }
+    for (int word = 0; word < words(vertexCount); word++) {
+      long bits = 0;
+      for (int bit = 0; bit < Long.SIZE && word * Long.SIZE + bit < vertexCount; bit++) {
+        if (interner.isTextual(word * Long.SIZE + bit)) {
+          bits |= 1L << bit;
+        }
+      }
+      data.writeLong(bits);
+    }
+
+    byte[][] labels = new byte[vertexCount][];
+    int offset = 0;
+    for (int id = 0; id < vertexCount; id++) {
+      labels[id] = interner.vertexOf(id).getBytes(StandardCharsets.UTF_8);
+      data.writeInt(offset);
+      offset += labels[id].length;
+    }
+    data.writeInt(offset);
+    for (byte[] label : labels) {
+      data.write(label);
+    }
+
+    for (int i = 0; i < edges.size(); i++) {
+      data.writeLong(edges.packed(i));
+    }
+
+    for (int v = 0; v < vertexCount; v++) {
+      data.writeInt(edges.start(v));
+    }
+    data.writeInt(edges.size());
+    data.flush();
+  }
+
+  /**
+   * reads a graph from a snapshot. The keys, labels and edges of the graph are views over the
+   * buffer rather than copies, so a memory mapped snapshot stays in the page cache instead of on
+   * the heap, and the buffer must not change while the graph is in use. The offsets and edges are
+   * checked to be in range before they are used, so a damaged snapshot is rejected here instead of
+   * failing a later search.
+   *
+   * @param in the buffer holding the snapshot, from its position onwards.
+   * @return the graph.
+   * @throws IOException if the snapshot is cut short or inconsistent.
+   */
+  public static Graph<String> read(ByteBuffer in) throws IOException {
+    try {
+      int vertexCount = in.getInt();
+      int declaredCount = in.getInt();
+      int edgeCount = in.getInt();
+      if (vertexCount < 0 || declaredCount < 0 || declaredCount > vertexCount || edgeCount < 0) {
+        throw new IOException("Corrupt graph snapshot header");
+      }
+
+      RelationProperties known = RelationProperties.UNKNOWN;
+      Boolean reflexive = decode(in.get());
+      Boolean symmetric = decode(in.get());
+      Boolean transitive = decode(in.get());
+      Boolean antiSymmetric = decode(in.get());
+      if (reflexive != null) {
+        known = known.withReflexive(reflexive);
+      }
+      if (symmetric != null) {
+        known = known.withSymmetric(symmetric);
+      }
+      if (transitive != null) {
+        known = known.withTransitive(transitive);
+      }
+      if (antiSymmetric != null) {
+        known = known.withAntiSymmetric(antiSymmetric);
+      }
+
+      IntBuffer keys = section(in, (long) vertexCount * Integer.BYTES).asIntBuffer();
+      BitSet textual =
+          BitSet.valueOf(section(in, (long) words(vertexCount) * Long.BYTES).asLongBuffer());
+      IntBuffer labelOffsets = section(in, (vertexCount + 1L) * Integer.BYTES).asIntBuffer();
+      checkOffsets(labelOffsets, in.remaining(), "labels");
+      ByteBuffer labelBytes = section(in, labelOffsets.get(vertexCount));
+      LongBuffer rows = section(in, (long) edgeCount * Long.BYTES).asLongBuffer();
+      IntBuffer offsets = section(in, (vertexCount + 1L) * Integer.BYTES).asIntBuffer();
+      checkOffsets(offsets, edgeCount, "rows");
+      if (offsets.get(vertexCount) != edgeCount) {
+        throw new IOException("Corrupt graph snapshot rows");
+      }
+      checkEdges(rows, offsets);
+
+      VertexInterner<String> interner =
+          new VertexInterner<>(new Labels(labelOffsets, labelBytes), keys, textual);
+      return new Graph<>(interner, declaredCount, new EdgeStore(rows, offsets, interner), known);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Truncated graph snapshot", e);
+    }
+  }
+
+  /**
+   * returns the next section of the buffer as a buffer of its own, and moves the buffer past it.
+   *
+   * @param in the buffer to read from.
+   * @param length the length of the section in bytes.
+   * @return the section.
+   * @throws IOException if the buffer ends before the section does.
+   */
+  private static ByteBuffer section(ByteBuffer in, long length) throws IOException {
+    if (length > in.remaining()) {
+      throw new IOException("Truncated graph snapshot");
+    }
+    ByteBuffer section = in.slice().limit((int) length);
+    in.position(in.position() + (int) length);
+    return section;
+  }
+
+  /**
+   * checks that a table of offsets starts at zero, never goes backwards and stays in range.
+   *
+   * @param offsets the offsets.
+   * @param bound the largest offset allowed.
+   * @param table the name of the table, for the message.
+   * @throws IOException if an offset is out of order or out of range.
+   */
+  private static void checkOffsets(IntBuffer offsets, long bound, String table)
+      throws IOException {
+    int previous = 0;
+    for (int i = 0; i < offsets.limit(); i++) {
+      int offset = offsets.get(i);
+      if (offset < previous || offset > bound || (i == 0 && offset != 0)) {
+        throw new IOException("Corrupt graph snapshot " + table);
+      }
+      previous = offset;
+    }
+  }
+
+  /**
+   * checks that every edge sits in the row of its source and leads to a vertex of the graph.
+   *
+   * @param rows the packed edges.
+   * @param offsets the start offset of the row of every vertex, then the edge count.
+   * @throws IOException if an edge is in the wrong row or names a vertex that does not exist.
+   */
+  private static void checkEdges(LongBuffer rows, IntBuffer offsets) throws IOException {
+    int vertexCount = offsets.limit() - 1;
+    for (int v = 0; v < vertexCount; v++) {
+      for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+        long edge = rows.get(i);
+        int destination = (int) edge;
+        if ((int) (edge >>> 32) != v || destination < 0 || destination >= vertexCount) {
+          throw new IOException("Corrupt graph snapshot edges");
+        }
+      }
+    }
+  }
+
+  /**
+   * returns the number of longs a bit set of the given number of bits is written as.
+   *
+   * @param bits the number of bits.
+   * @return the number of longs.
+   */
+  private static int words(int bits) {
+    return (int) ((bits + Long.SIZE - 1L) / Long.SIZE);
+  }
+
+  private static int encode(Boolean property) {
+    return property == null ? 0 : property ? 2 : 1;
+  }
+
+  private static Boolean decode(byte property) throws IOException {
+    switch (property) {
+      case 0:
+        return null;
+      case 1:
+        return false;
+      case 2:
+        return true;
+      default:
+        throw new IOException("Corrupt graph snapshot property " + property);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A first in first out queue of primitive ints, backed by a ring buffer whose capacity doubles
+ * when it fills up. Clearing the queue keeps the buffer, so one queue can be reused between
+ * searches without allocating again.
+ */
+final class IntQueue {
+
+  private int[] buffer;
+  private int head;
+  private int size;
+
+  /** creates an empty queue with a small starting capacity. */
+  IntQueue() {
+    buffer = new int[16];
+  }
+
+  /**
+   * adds a value to the back of the queue.
+   *
+   * @param value the value to add.
+   */
+  void enqueue(int value) {
+    if (size == buffer.length) {
+      grow();
+    }
+    // The capacity is always a power of two, so the mask wraps the index around the buffer
+    buffer[(head + size) & (buffer.length - 1)] = value;
+    size++;
+  }
+
+  /**
+   * removes the value at the front of the queue.
+   *
+   * @return the value that was at the front.
+   */
+  int dequeue() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    int value = buffer[head];
+    head = (head + 1) & (buffer.length - 1);
+    size--;
+    return value;
+  }
+
+  /**
+   * checks if the queue is empty.
+   *
+   * @return boolean value whether the queue is empty.
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * copies the values in the queue into a new array, from front to back.
+   *
+   * @return the values in the queue.
+   */
+  int[] toArray() {
+    int[] values = new int[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = buffer[(head + i) & (buffer.length - 1)];
+    }
+    return values;
+  }
+
+  /** empties the queue, keeping its buffer for the next use. */
+  void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /** doubles the buffer, unwrapping the queue so it starts at the front of the new buffer. */
+  private void grow() {
+    int[] larger = new int[buffer.length * 2];
+    int firstPart = buffer.length - head;
+    System.arraycopy(buffer, head, larger, 0, firstPart);
+    System.arraycopy(buffer, 0, larger, firstPart, head);
+    buffer = larger;
+    head = 0;
+  }
+}
@@ -0,0 +1,58 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A last in first out stack of primitive ints, backed by an array whose capacity doubles when it
+ * fills up. Clearing the stack keeps the array, so one stack can be reused between searches
+ * without allocating again.
+ */
+final class IntStack {
+
+  private int[] buffer;
+  private int size;
+
+  /** creates an empty stack with a small starting capacity. */
+  IntStack() {
+    buffer = new int[16];
+  }
+
+  /**
+   * adds a value to the top of the stack.
+   *
+   * @param value the value to add.
+   */
+  void push(int value) {
+    if (size == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[size++] = value;
+  }
+
+  /**
+   * removes the value at the top of the stack.
+   *
+   * @return the value that was on top.
+   */
+  int pop() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return buffer[--size];
+  }
+
+  /**
+   * checks if the stack is empty.
+   *
+   * @return boolean value whether the stack is empty.
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** empties the stack, keeping its array for the next use. */
+  void clear() {
+    size = 0;
+  }
+}
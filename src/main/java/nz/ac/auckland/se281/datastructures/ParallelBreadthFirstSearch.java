@@ -0,0 +1,218 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * A level synchronous breadth first search that expands every level of the search across the fork
+ * join pool, while giving exactly the same order as the sequential search.
+ *
+ * <p>In the sequential search a vertex is queued by the first vertex of the frontier that reaches
+ * it, and vertices queued by the same parent follow the numerical order of its neighbors. Each
+ * level is expanded in two parallel passes to keep that order. The first pass lets every frontier
+ * vertex claim its unvisited neighbors with an atomic minimum of its frontier position, so each
+ * vertex ends up owned by the earliest parent. The second pass lets every chunk of the frontier
+ * list the neighbors it owns, in frontier and neighbor order, and the chunks are joined in order.
+ * Small levels are expanded sequentially, as splitting them costs more than it saves.
+ */
+final class ParallelBreadthFirstSearch {
+
+  private static final int PARALLEL_EDGES = 1 << 13;
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final EdgeStore edges;
+  private final boolean[] visited;
+  private final AtomicIntegerArray owner;
+  private final int[] order;
+  private int size;
+
+  /**
+   * creates a search over the rows of the given edges.
+   *
+   * @param edges the edges of the graph.
+   * @param rootCount the number of roots the search starts from.
+   */
+  private ParallelBreadthFirstSearch(EdgeStore edges, int rootCount) {
+    this.edges = edges;
+    this.visited = new boolean[edges.vertexCount()];
+    this.owner = new AtomicIntegerArray(edges.vertexCount());
+    // Like the sequential search, a root is taken again even if an earlier root reached it
+    this.order = new int[edges.vertexCount() + rootCount];
+    for (int v = 0; v < edges.vertexCount(); v++) {
+      owner.set(v, Integer.MAX_VALUE);
+    }
+  }
+
+  /**
+   * searches from every root in turn, and returns the ids of the verticies in the order they are
+   * searched.
+   *
+   * @param edges the edges of the graph.
+   * @param roots the ids of the root verticies, in numerical order.
+   * @return the ids of the searched verticies, in search order.
+   */
+  static int[] search(EdgeStore edges, int[] roots) {
+    ParallelBreadthFirstSearch search = new ParallelBreadthFirstSearch(edges, roots.length);
+    for (int root : roots) {
+      search.searchFrom(root);
+    }
+    return Arrays.copyOf(search.order, search.size);
+  }
+
+  /**
+   * searches one level at a time from the given root.
+   *
+   * @param root the id of the root vertex.
+   */
+  private void searchFrom(int root) {
+    // The sequential search takes the root even when an earlier root already reached it
+    visited[root] = true;
+    int[] frontier = {root};
+    while (frontier.length > 0) {
+      append(frontier);
+      frontier = expand(frontier);
+    }
+  }
+
+  /**
+   * adds a level to the search order.
+   *
+   * @param level the ids of the verticies in the level, in search order.
+   */
+  private void append(int[] level) {
+    System.arraycopy(level, 0, order, size, level.length);
+    size += level.length;
+  }
+
+  /**
+   * finds the next level of the search, and marks its verticies as visited.
+   *
+   * @param frontier the ids of the verticies in the current level, in search order.
+   * @return the ids of the verticies in the next level, in search order.
+   */
+  private int[] expand(int[] frontier) {
+    int edgeCount = 0;
+    for (int i = 0; i < frontier.length && edgeCount < PARALLEL_EDGES; i++) {
+      edgeCount += edges.end(frontier[i]) - edges.start(frontier[i]);
+    }
+    if (edgeCount < PARALLEL_EDGES) {
+      return expandSequentially(frontier);
+    }
+
+    int chunks =
+        Math.min(frontier.length, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD);
+
+    // First pass: every unvisited neighbor is owned by the earliest frontier position reaching it
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            chunk -> {
+              for (int p = chunkStart(frontier, chunks, chunk);
+                  p < chunkStart(frontier, chunks, chunk + 1);
+                  p++) {
+                for (int i = edges.start(frontier[p]); i < edges.end(frontier[p]); i++) {
+                  int neighbor = edges.destination(i);
+                  if (!visited[neighbor]) {
+                    claim(neighbor, p);
+                  }
+                }
+              }
+            });
+
+    // Second pass: every chunk lists the neighbors it owns, in frontier and neighbor order
+    int[][] parts =
+        IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(chunk -> collect(frontier, chunks, chunk))
+            .toArray(int[][]::new);
+
+    int total = 0;
+    for (int[] part : parts) {
+      total += part.length;
+    }
+    int[] next = new int[total];
+    int position = 0;
+    for (int[] part : parts) {
+      System.arraycopy(part, 0, next, position, part.length);
+      position += part.length;
+    }
+
+    // The passes have joined, so plain writes are seen by the next level
+    for (int vertex : next) {
+      visited[vertex] = true;
+    }
+    return next;
+  }
+
+  /**
+   * lowers the owner of a vertex to the given frontier position, if it is earlier.
+   *
+   * @param vertex the id of the vertex.
+   * @param position the frontier position of the parent claiming it.
+   */
+  private void claim(int vertex, int position) {
+    int current = owner.get(vertex);
+    while (position < current && !owner.compareAndSet(vertex, current, position)) {
+      current = owner.get(vertex);
+    }
+  }
+
+  /**
+   * lists the unvisited neighbors owned by one chunk of the frontier.
+   *
+   * @param frontier the ids of the verticies in the current level.
+   * @param chunks the number of chunks the frontier is split into.
+   * @param chunk the index of the chunk.
+   * @return the ids of the owned neighbors, in frontier and neighbor order.
+   */
+  private int[] collect(int[] frontier, int chunks, int chunk) {
+    IntQueue owned = new IntQueue();
+    for (int p = chunkStart(frontier, chunks, chunk);
+        p < chunkStart(frontier, chunks, chunk + 1);
+        p++) {
+      for (int i = edges.start(frontier[p]); i < edges.end(frontier[p]); i++) {
+        int neighbor = edges.destination(i);
+        if (!visited[neighbor] && owner.get(neighbor) == p) {
+          owned.enqueue(neighbor);
+        }
+      }
+    }
+
+    return owned.toArray();
+  }
+
+  /**
+   * finds the next level one vertex at a time, exactly like the sequential search.
+   *
+   * @param frontier the ids of the verticies in the current level, in search order.
+   * @return the ids of the verticies in the next level, in search order.
+   */
+  private int[] expandSequentially(int[] frontier) {
+    IntQueue next = new IntQueue();
+    for (int vertex : frontier) {
+      for (int i = edges.start(vertex); i < edges.end(vertex); i++) {
+        int neighbor = edges.destination(i);
+        if (!visited[neighbor]) {
+          visited[neighbor] = true;
+          next.enqueue(neighbor);
+        }
+      }
+    }
+
+    return next.toArray();
+  }
+
+  /**
+   * returns the first frontier position of a chunk, splitting the frontier into even chunks.
+   *
+   * @param frontier the ids of the verticies in the current level.
+   * @param chunks the number of chunks.
+   * @param chunk the index of the chunk.
+   * @return the first position of the chunk, or the frontier length for the chunk after the last.
+   */
+  private static int chunkStart(int[] frontier, int chunks, int chunk) {
+    return (int) ((long) frontier.length * chunk / chunks);
+  }
+}
@@ -0,0 +1,155 @@
+package nz.ac.auckland.se281.datastructures;
+
+/**
+ * The relation properties of a graph that have been computed so far. Each property is either
+ * known to hold, known not to hold, or not computed yet. Instances are immutable, so a graph can
+ * share them between threads and publish a new instance whenever another property is computed.
+ */
+public final class RelationProperties {
+
+  static final RelationProperties UNKNOWN = new RelationProperties(null, null, null, null);
+
+  private final Boolean reflexive;
+  private final Boolean symmetric;
+  private final Boolean transitive;
+  private final Boolean antiSymmetric;
+
+  private RelationProperties(
+      Boolean reflexive, Boolean symmetric, Boolean transitive, Boolean antiSymmetric) {
+    this.reflexive = reflexive;
+    this.symmetric = symmetric;
+    this.transitive = transitive;
+    this.antiSymmetric = antiSymmetric;
+  }
+
+  /**
+   * returns whether the relation is reflexive, or null if that has not been computed yet.
+   *
+   * @return the reflexive property.
+   */
+  Boolean reflexive() {
+    return reflexive;
+  }
+
+  /**
+   * returns whether the relation is symmetric, or null if that has not been computed yet.
+   *
+   * @return the symmetric property.
+   */
+  Boolean symmetric() {
+    return symmetric;
+  }
+
+  /**
+   * returns whether the relation is transitive, or null if that has not been computed yet.
+   *
+   * @return the transitive property.
+   */
+  Boolean transitive() {
+    return transitive;
+  }
+
+  /**
+   * returns whether the relation is antisymmetric, or null if that has not been computed yet.
+   *
+   * @return the antisymmetric property.
+   */
+  Boolean antiSymmetric() {
+    return antiSymmetric;
+  }
+
+  /**
+   * returns whether the relation is an equivalence relation, or null if that cannot be told from
+   * the properties computed so far. A single property known not to hold is enough to rule it out.
+   *
+   * @return the equivalence property.
+   */
+  Boolean equivalence() {
+    if (Boolean.FALSE.equals(reflexive)
+        || Boolean.FALSE.equals(symmetric)
+        || Boolean.FALSE.equals(transitive)) {
+      return false;
+    }
+    if (reflexive == null || symmetric == null || transitive == null) {
+      return null;
+    }
+    return true;
+  }
+
+  RelationProperties withReflexive(boolean value) {
+    return new RelationProperties(value, symmetric, transitive, antiSymmetric);
+  }
+
+  RelationProperties withSymmetric(boolean value) {
+    return new RelationProperties(reflexive, value, transitive, antiSymmetric);
+  }
+
+  RelationProperties withTransitive(boolean value) {
+    return new RelationProperties(reflexive, symmetric, value, antiSymmetric);
+  }
+
+  RelationProperties withAntiSymmetric(boolean value) {
+    return new RelationProperties(reflexive, symmetric, transitive, value);
+  }
+
+  /**
+   * checks whether every property has been computed.
+   *
+   * @return boolean value whether every property is known.
+   */
+  public boolean isComplete() {
+    return reflexive != null && symmetric != null && transitive != null && antiSymmetric != null;
+  }
+
+  /**
+   * returns whether the relation is reflexive.
+   *
+   * @return boolean value whether the relation is reflexive.
+   */
+  public boolean isReflexive() {
+    return known(reflexive);
+  }
+
+  /**
+   * returns whether the relation is symmetric.
+   *
+   * @return boolean value whether the relation is symmetric.
+   */
+  public boolean isSymmetric() {
+    return known(symmetric);
+  }
+
+  /**
+   * returns whether the relation is transitive.
+   *
+   * @return boolean value whether the relation is transitive.
+   */
+  public boolean isTransitive() {
+    return known(transitive);
+  }
+
+  /**
+   * returns whether the relation is antisymmetric.
+   *
+   * @return boolean value whether the relation is antisymmetric.
+   */
+  public boolean isAntiSymmetric() {
+    return known(antiSymmetric);
+  }
+
+  /**
+   * returns whether the relation is an equivalence relation.
+   *
+   * @return boolean value whether the relation is an equivalence relation.
+   */
+  public boolean isEquivalence() {
+    return known(equivalence());
+  }
+
+  private static boolean known(Boolean value) {
+    if (value == null) {
+      throw new IllegalStateException("The property has not been computed yet");
+    }
+    return value;
+  }
+}
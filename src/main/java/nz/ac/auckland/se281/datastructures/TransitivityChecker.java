@@ -0,0 +1,175 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks whether a relation is transitive, that is whether for every edge u -> v the successors of
+ * v are a subset of the successors of u.
+ *
+ * <p>When the relation is small enough, the successors of every vertex are stored as a row of a
+ * dense bit matrix, and the subset test is done a word at a time with AND-NOT. Larger relations
+ * fall back to looking every two step path up in the sorted rows of the edges. The matrix may use
+ * up to 64 MiB unless the {@code graphcalc.transitivity.denseLimitBytes} system property says
+ * otherwise, and the property is read on every check, so it can be changed at run time. Either way
+ * the verticies are split across the fork join pool, and every task stops as soon as any task finds
+ * a violation.
+ */
+final class TransitivityChecker {
+
+  private static final String DENSE_LIMIT_PROPERTY = "graphcalc.transitivity.denseLimitBytes";
+  private static final long DENSE_LIMIT_BYTES = 64L << 20;
+  private static final int SPLIT_EDGES = 1 << 12;
+
+  private final EdgeStore edges;
+  private final AtomicBoolean violated = new AtomicBoolean();
+  private final int words;
+  private long[] matrix;
+
+  /**
+   * creates a checker over the edges of a graph.
+   *
+   * @param edges the edges of the graph.
+   */
+  private TransitivityChecker(EdgeStore edges) {
+    this.edges = edges;
+    this.words = (edges.vertexCount() + 63) >>> 6;
+  }
+
+  /**
+   * checks whether the relation described by the given edges is transitive.
+   *
+   * @param edges the edges of the graph.
+   * @return boolean value whether the relation is transitive.
+   */
+  static boolean isTransitive(EdgeStore edges) {
+    return new TransitivityChecker(edges).check();
+  }
+
+  /**
+   * runs the check, choosing between the dense bit matrix and the sparse fallback.
+   *
+   * @return boolean value whether the relation is transitive.
+   */
+  private boolean check() {
+    int vertexCount = edges.vertexCount();
+    long denseLimit = Long.getLong(DENSE_LIMIT_PROPERTY, DENSE_LIMIT_BYTES);
+    if ((long) vertexCount * words * Long.BYTES <= denseLimit) {
+      matrix = new long[vertexCount * words];
+      new RangeTask(0, vertexCount, true).invoke();
+    }
+    new RangeTask(0, vertexCount, false).invoke();
+    return !violated.get();
+  }
+
+  /**
+   * sets the bit of every successor of the given vertex in its row of the matrix.
+   *
+   * @param vertex the id of the vertex.
+   */
+  private void fillRow(int vertex) {
+    int row = vertex * words;
+    for (int i = edges.start(vertex); i < edges.end(vertex); i++) {
+      int neighbor = edges.destination(i);
+      matrix[row + (neighbor >>> 6)] |= 1L << neighbor;
+    }
+  }
+
+  /**
+   * checks every edge leaving the given vertex, using whichever representation was built.
+   *
+   * @param vertex the id of the vertex.
+   */
+  private void checkVertex(int vertex) {
+    for (int i = edges.start(vertex); i < edges.end(vertex); i++) {
+      int neighbor = edges.destination(i);
+      // Stop early if another task has already found a violating pair
+      if (violated.get()) {
+        return;
+      }
+      if (neighbor == vertex) {
+        continue;
+      }
+      boolean subset =
+          matrix == null ? sparseSubset(vertex, neighbor) : denseSubset(vertex, neighbor);
+      if (!subset) {
+        violated.set(true);
+        return;
+      }
+    }
+  }
+
+  /**
+   * checks whether the successors of the destination are a subset of the successors of the source,
+   * one word of the matrix at a time.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return boolean value whether the subset relation holds.
+   */
+  private boolean denseSubset(int source, int destination) {
+    int sourceRow = source * words;
+    int destinationRow = destination * words;
+    for (int k = 0; k < words; k++) {
+      if ((matrix[destinationRow + k] & ~matrix[sourceRow + k]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * checks whether the successors of the destination are a subset of the successors of the source,
+   * by looking every two step path up in the row of the source.
+   *
+   * @param source the id of the source vertex.
+   * @param destination the id of the destination vertex.
+   * @return boolean value whether the subset relation holds.
+   */
+  private boolean sparseSubset(int source, int destination) {
+    for (int i = edges.start(destination); i < edges.end(destination); i++) {
+      if (!edges.contains(source, edges.destination(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A task over a range of verticies, split in halves until each half holds few edges. */
+  private class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final boolean fill;
+
+    private RangeTask(int from, int to, boolean fill) {
+      this.from = from;
+      this.to = to;
+      this.fill = fill;
+    }
+
+    @Override
+    protected void compute() {
+      if (violated.get()) {
+        return;
+      }
+
+      // Split ranges holding many edges, so every worker gets an even share of the edges
+      int edgeCount = to > from ? edges.end(to - 1) - edges.start(from) : 0;
+      if (to - from > 1 && edgeCount > SPLIT_EDGES) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RangeTask(from, middle, fill), new RangeTask(middle, to, fill));
+        return;
+      }
+
+      for (int vertex = from; vertex < to && !violated.get(); vertex++) {
+        if (fill) {
+          fillRow(vertex);
+        } else {
+          checkVertex(vertex);
+        }
+      }
+    }
+  }
+}
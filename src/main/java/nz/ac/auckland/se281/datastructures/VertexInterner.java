@@ -0,0 +1,332 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps every vertex of a graph to a dense int id, handed out in the order the verticies are first
+ * seen, and remembers the numerical sort key of each id in a primitive array. The graph algorithms
+ * work on the ids and only turn them back into verticies when they return a result.
+ *
+ * <p>An interner read from a snapshot keeps its keys in the mapped file, and only builds the map
+ * from verticies to ids the first time a vertex is looked up by value.
+ *
+ * <p>Verticies are sorted by the number their label reads as. A label that is not a number, such as
+ * {@code a}, has no numerical key, so once a graph has one the verticies with numerical keys come
+ * first, in numerical order, followed by the other verticies in the string order of their labels.
+ *
+ * @param <T> The type of each vertex.
+ */
+final class VertexInterner<T> {
+
+  private static final long NO_KEY = Long.MIN_VALUE;
+
+  private volatile Map<T, Integer> ids;
+  private final List<T> verticies;
+  private final BitSet textual;
+  private IntBuffer keys;
+
+  /** creates an empty interner. */
+  VertexInterner() {
+    ids = new HashMap<>();
+    verticies = new ArrayList<>();
+    textual = new BitSet();
+    keys = IntBuffer.wrap(new int[16]);
+  }
+
+  /**
+   * creates an interner over verticies whose ids and keys are already known, such as verticies
+   * read from a snapshot. The map from verticies to ids is left to be built when first needed.
+   *
+   * @param verticies the verticies, in id order.
+   * @param keys the numerical sort key of every vertex, in id order.
+   * @param textual the ids of the verticies whose labels are not numbers.
+   */
+  VertexInterner(List<T> verticies, IntBuffer keys, BitSet textual) {
+    this.verticies = verticies;
+    this.textual = textual;
+    this.keys = keys;
+  }
+
+  /**
+   * creates an interner that starts from the ids of another interner.
+   *
+   * @param ids the id of every vertex.
+   * @param verticies the verticies, in id order.
+   * @param textual the ids of the verticies whose labels are not numbers.
+   * @param keys the numerical sort key of every vertex, in id order.
+   */
+  private VertexInterner(Map<T, Integer> ids, List<T> verticies, BitSet textual, IntBuffer keys) {
+    this.ids = ids;
+    this.verticies = verticies;
+    this.textual = textual;
+    this.keys = keys;
+  }
+
+  /**
+   * returns a copy of the interner that can intern more verticies without changing this one. Every
+   * vertex keeps its id in the copy.
+   *
+   * @return the copy.
+   */
+  VertexInterner<T> copy() {
+    int[] copied = new int[Math.max(16, size())];
+    keys.get(0, copied, 0, size());
+    return new VertexInterner<>(
+        new HashMap<>(ids()),
+        new ArrayList<>(verticies),
+        (BitSet) textual.clone(),
+        IntBuffer.wrap(copied));
+  }
+
+  /**
+   * returns the map from verticies to ids, building it from the verticies the first time it is
+   * needed by an interner read from a snapshot.
+   *
+   * @return the id of every vertex.
+   */
+  private Map<T, Integer> ids() {
+    Map<T, Integer> current = ids;
+    if (current == null) {
+      synchronized (this) {
+        current = ids;
+        if (current == null) {
+          current = new HashMap<>(Math.max(16, (int) (verticies.size() / 0.75f) + 1));
+          for (int id = 0; id < verticies.size(); id++) {
+            current.put(verticies.get(id), id);
+          }
+          ids = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * returns the id of the given vertex, giving it the next free id if it has not been seen yet.
+   *
+   * @param vertex the vertex to intern.
+   * @return the id of the vertex.
+   */
+  int intern(T vertex) {
+    Map<T, Integer> ids = ids();
+    Integer id = ids.get(vertex);
+    if (id != null) {
+      return id;
+    }
+
+    int newId = verticies.size();
+    ids.put(vertex, newId);
+    verticies.add(vertex);
+    if (newId == keys.capacity()) {
+      keys = IntBuffer.wrap(Arrays.copyOf(keys.array(), newId * 2));
+    }
+    // Parse the numerical sort key once, instead of on every comparison
+    long key = parseKey(vertex);
+    if (key == NO_KEY) {
+      textual.set(newId);
+      key = 0;
+    }
+    keys.put(newId, (int) key);
+    return newId;
+  }
+
+  /**
+   * reads the label of a vertex as an int, the same way as {@link Integer#parseInt(String)} but
+   * without throwing for a label that is not one.
+   *
+   * @param vertex the vertex.
+   * @return the numerical sort key, or {@link #NO_KEY} if the label is not an int.
+   */
+  private static long parseKey(Object vertex) {
+    String label = vertex.toString();
+    int length = label.length();
+    int start = length > 1 && (label.charAt(0) == '-' || label.charAt(0) == '+') ? 1 : 0;
+    if (length == 0 || length - start > 10) {
+      return NO_KEY;
+    }
+
+    long value = 0;
+    for (int i = start; i < length; i++) {
+      char digit = label.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return NO_KEY;
+      }
+      value = value * 10 + (digit - '0');
+    }
+    value = label.charAt(0) == '-' ? -value : value;
+    return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NO_KEY : value;
+  }
+
+  /**
+   * returns the id of the given vertex, without interning it.
+   *
+   * @param vertex the vertex to look up.
+   * @return the id of the vertex, or -1 if the vertex is not in the graph.
+   */
+  int idOf(Object vertex) {
+    Integer id = ids().get(vertex);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * returns the vertex with the given id.
+   *
+   * @param id the id of the vertex.
+   * @return the vertex.
+   */
+  T vertexOf(int id) {
+    return verticies.get(id);
+  }
+
+  /**
+   * checks if the label of the vertex with the given id is not a number.
+   *
+   * @param id the id of the vertex.
+   * @return boolean value of whether the label has no numerical sort key.
+   */
+  boolean isTextual(int id) {
+    return textual.get(id);
+  }
+
+  /**
+   * returns the numerical sort key of the vertex with the given id.
+   *
+   * @param id the id of the vertex.
+   * @return the numerical sort key, or 0 if the label of the vertex is not a number.
+   */
+  int sortKey(int id) {
+    return keys.get(id);
+  }
+
+  /**
+   * compares two ids by the sort order of their verticies, with ties broken by id.
+   *
+   * @param first the first id.
+   * @param second the second id.
+   * @return a negative number, zero or a positive number as the first vertex sorts before, the
+   *     same as or after the second.
+   */
+  int compare(int first, int second) {
+    if (!textual.isEmpty()) {
+      boolean firstTextual = textual.get(first);
+      if (firstTextual != textual.get(second)) {
+        return firstTextual ? 1 : -1;
+      }
+      if (firstTextual) {
+        int order = verticies.get(first).toString().compareTo(verticies.get(second).toString());
+        return order != 0 ? order : Integer.compare(first, second);
+      }
+    }
+    int order = Integer.compare(keys.get(first), keys.get(second));
+    return order != 0 ? order : Integer.compare(first, second);
+  }
+
+  /**
+   * returns the number of interned verticies.
+   *
+   * @return the number of verticies.
+   */
+  int size() {
+    return verticies.size();
+  }
+
+  /**
+   * returns every id, sorted into numerical order of their verticies.
+   *
+   * @return the ids in numerical order.
+   */
+  int[] numericalOrder() {
+    int[] order = new int[size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    sortByKey(order, 0, order.length);
+    return order;
+  }
+
+  /**
+   * returns every id, sorted into the string order of the labels of their verticies, which is the
+   * order verticies are listed in. Each label is read once, before the sort.
+   *
+   * @return the ids in label order.
+   */
+  int[] labelOrder() {
+    String[] labels = new String[size()];
+    Integer[] boxed = new Integer[size()];
+    for (int id = 0; id < boxed.length; id++) {
+      labels[id] = verticies.get(id).toString();
+      boxed[id] = id;
+    }
+    Arrays.sort(boxed, (first, second) -> labels[first].compareTo(labels[second]));
+
+    int[] order = new int[boxed.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = boxed[i];
+    }
+    return order;
+  }
+
+  /**
+   * sorts a range of ids into numerical order of their verticies. Each id is packed together with
+   * its key into a long, so the sort runs on primitives without a comparator.
+   *
+   * @param values the array of ids to sort.
+   * @param from the first index to sort, inclusive.
+   * @param to the last index to sort, exclusive.
+   */
+  void sortByKey(int[] values, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    if (!textual.isEmpty()) {
+      // Labels that are not numbers need a comparator, which is only paid for by such graphs
+      Integer[] boxed = new Integer[to - from];
+      for (int i = from; i < to; i++) {
+        boxed[i - from] = values[i];
+      }
+      Arrays.sort(boxed, this::compare);
+      for (int i = from; i < to; i++) {
+        values[i] = boxed[i - from];
+      }
+      return;
+    }
+
+    long[] packed = new long[to - from];
+    for (int i = from; i < to; i++) {
+      packed[i - from] = ((long) keys.get(values[i]) << 32) | values[i];
+    }
+    Arrays.sort(packed);
+    for (int i = from; i < to; i++) {
+      values[i] = (int) packed[i - from];
+    }
+  }
+
+  /**
+   * estimates the heap used by the interner, which is mostly the map entry, the boxed id and the
+   * vertex of every id. Only string labels are measured by their length. The keys and labels of an
+   * interner read from a snapshot stay in the mapped file, so only its map is counted, once built.
+   *
+   * @return the estimated size in bytes.
+   */
+  long estimatedBytes() {
+    if (!keys.hasArray()) {
+      Map<T, Integer> built = ids;
+      return 64 + textual.size() / Byte.SIZE + (built == null ? 0 : 96L * built.size());
+    }
+    long bytes = 64 + (long) keys.capacity() * Integer.BYTES;
+    for (T vertex : verticies) {
+      // The map node and table slot, the boxed id, the list slot and the vertex object
+      bytes += 96;
+      if (vertex instanceof String) {
+        bytes += ((String) vertex).length();
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,174 @@
+package nz.ac.auckland.se281.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import nz.ac.auckland.se281.datastructures.Edge;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphBuilder;
+
+/**
+ * The verticies and edges parsed from one chunk of a file, owned by the single worker parsing
+ * it. Verticies get local ids in the order they are first seen in the chunk, and edges are packed
+ * into longs of local ids, so a chunk is parsed without touching any shared state.
+ *
+ * <p>Verticies with numeric labels can be added by their value, which is looked up in an open
+ * addressing table of ints, so a label is only made into a string the first time it is seen.
+ */
+final class ChunkBuffer {
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<String> labels = new ArrayList<>();
+  private int[] numericKeys = newNumericKeys(16);
+  private int[] numericIds = new int[16];
+  private int numericCount;
+  private long[] edges = new long[16];
+  private int edgeCount;
+
+  /**
+   * adds a vertex to the chunk, if it has not been seen in the chunk yet.
+   *
+   * @param label the vertex.
+   * @return the local id of the vertex.
+   */
+  int vertex(String label) {
+    Integer id = ids.get(label);
+    if (id != null) {
+      return id;
+    }
+    ids.put(label, labels.size());
+    labels.add(label);
+    return labels.size() - 1;
+  }
+
+  /**
+   * adds a vertex with a numeric label to the chunk, if it has not been seen in the chunk yet.
+   * The label is the value written without a sign or leading zeros.
+   *
+   * @param value the label of the vertex, which must not be negative.
+   * @return the local id of the vertex.
+   */
+  int vertex(int value) {
+    int mask = numericKeys.length - 1;
+    int slot = hash(value) & mask;
+    while (numericKeys[slot] >= 0) {
+      if (numericKeys[slot] == value) {
+        return numericIds[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    // The label goes into the string table too, so both ways of adding it give the same id
+    int id = vertex(Integer.toString(value));
+    numericKeys[slot] = value;
+    numericIds[slot] = id;
+    if (++numericCount * 2 > numericKeys.length) {
+      growNumeric();
+    }
+    return id;
+  }
+
+  /** doubles the numeric label table, keeping it at most half full. */
+  private void growNumeric() {
+    int[] oldKeys = numericKeys;
+    int[] oldIds = numericIds;
+    numericKeys = newNumericKeys(oldKeys.length * 2);
+    numericIds = new int[oldKeys.length * 2];
+    int mask = numericKeys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] >= 0) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (numericKeys[slot] >= 0) {
+          slot = (slot + 1) & mask;
+        }
+        numericKeys[slot] = oldKeys[i];
+        numericIds[slot] = oldIds[i];
+      }
+    }
+  }
+
+  private static int[] newNumericKeys(int capacity) {
+    int[] keys = new int[capacity];
+    Arrays.fill(keys, -1);
+    return keys;
+  }
+
+  /**
+   * spreads the bits of a label, so runs of consecutive labels do not fill neighbouring slots.
+   *
+   * @param value the label.
+   * @return the hash of the label.
+   */
+  private static int hash(int value) {
+    int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * adds an edge to the chunk.
+   *
+   * @param source the local id of the source vertex.
+   * @param destination the local id of the destination vertex.
+   */
+  void edge(int source, int destination) {
+    if (edgeCount == edges.length) {
+      edges = Arrays.copyOf(edges, edgeCount * 2);
+    }
+    edges[edgeCount++] = ((long) source << 32) | destination;
+  }
+
+  /**
+   * returns the number of edges added to the chunk, counting repeated edges.
+   *
+   * @return the number of edges.
+   */
+  int edgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * adds the verticies and edges of the chunk to a graph loaded from the part of the file before
+   * it. The graph is extended rather than rebuilt, see {@link Graph#extend}.
+   *
+   * @param graph the graph loaded from the part of the file before the chunk.
+   * @return the extended graph.
+   */
+  Graph<String> appendTo(Graph<String> graph) {
+    List<Edge<String>> newEdges = new ArrayList<>(edgeCount);
+    for (int i = 0; i < edgeCount; i++) {
+      long edge = edges[i];
+      newEdges.add(new Edge<>(labels.get((int) (edge >>> 32)), labels.get((int) edge)));
+    }
+    return graph.extend(labels, newEdges);
+  }
+
+  /**
+   * merges the chunks of a file into a graph. Visiting the chunks in file order, and the verticies
+   * of each chunk in the order they were first seen, hands out the same vertex ids as parsing the
+   * whole file in one pass.
+   *
+   * @param chunks the chunks, in file order.
+   * @return the graph.
+   */
+  static Graph<String> merge(List<ChunkBuffer> chunks) {
+    int totalEdges = 0;
+    for (ChunkBuffer chunk : chunks) {
+      totalEdges += chunk.edgeCount;
+    }
+
+    GraphBuilder<String> builder = new GraphBuilder<>(totalEdges);
+    for (ChunkBuffer chunk : chunks) {
+      int[] globalIds = new int[chunk.labels.size()];
+      for (int local = 0; local < globalIds.length; local++) {
+        globalIds[local] = builder.vertexId(chunk.labels.get(local));
+      }
+      for (int i = 0; i < chunk.edgeCount; i++) {
+        long edge = chunk.edges[i];
+        builder.addEdge(globalIds[(int) (edge >>> 32)], globalIds[(int) edge]);
+      }
+    }
+    return builder.build();
+  }
+}
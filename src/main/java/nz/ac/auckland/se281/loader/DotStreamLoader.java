@@ -0,0 +1,483 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import nz.ac.auckland.se281.datastructures.Graph;
+
+/**
+ * Loads a graph from a DOT file in a single pass over the memory mapped file, collecting every
+ * vertex and edge into a {@link ChunkBuffer} without building a parse tree.
+ *
+ * <p>Only the subset of DOT used by the test cases is handled: a {@code digraph} whose statements
+ * are verticies or chains of edges like {@code a -> b -> c}, with optional semicolons and
+ * comments. Anything else, such as attributes, quoted ids or subgraphs, throws {@link
+ * UnsupportedDotException} so the file can be loaded by the full parser instead.
+ *
+ * <p>Compressed files are read from a decompressing stream instead of a mapped file, through a
+ * large window that is refilled whenever the parser reaches its end. Only the current token and
+ * the byte before it are kept when the window is refilled, so the file is never held in memory.
+ *
+ * <p>Files of at least {@code graphcalc.parallelParse.minBytes} bytes, 4 MiB unless the system
+ * property says otherwise, have their statements split into line aligned chunks that are parsed
+ * by the fork join pool, each into its own {@link ChunkBuffer}. Chunks are at least {@code
+ * graphcalc.parallelParse.chunkBytes} bytes, 1 MiB unless the system property says otherwise. Both
+ * properties are read on every load. A chunk that starts or ends in the middle of a statement or a
+ * block comment fails to parse, and the file is then parsed in one pass instead, so the graph is
+ * always the same as the one pass would give.
+ */
+final class DotStreamLoader {
+
+  private static final String PARALLEL_MIN_PROPERTY = "graphcalc.parallelParse.minBytes";
+  private static final String CHUNK_PROPERTY = "graphcalc.parallelParse.chunkBytes";
+  private static final long PARALLEL_MIN_BYTES = 4 << 20;
+  private static final int MIN_CHUNK_BYTES = 1 << 20;
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int PROGRESS_BYTES = 1 << 16;
+  private static final int STREAM_WINDOW_BYTES = 1 << 22;
+
+  private final InputStream stream;
+  private final boolean chunked;
+  private final LoadProgress progress;
+  private ByteBuffer input;
+  private int limit;
+  private byte[] token = new byte[16];
+  private int position;
+  private int tokenStart = -1;
+  private long discarded;
+  private boolean streamEnded;
+
+  /**
+   * creates a loader over a range of the input.
+   *
+   * @param input the whole file.
+   * @param start the position to start parsing from.
+   * @param limit the position to stop parsing at.
+   * @param chunked whether the range is one chunk of the statements, rather than the whole file.
+   * @param progress the progress to report the statements parsed to.
+   */
+  private DotStreamLoader(
+      ByteBuffer input, int start, int limit, boolean chunked, LoadProgress progress) {
+    this.stream = null;
+    this.input = input;
+    this.position = start;
+    this.limit = limit;
+    this.chunked = chunked;
+    this.progress = progress;
+  }
+
+  /**
+   * creates a loader over a stream, which is read through a window that starts out empty.
+   *
+   * @param stream the stream of the whole file.
+   * @param progress the progress to report the edges parsed to. The stream reports the bytes.
+   */
+  private DotStreamLoader(InputStream stream, LoadProgress progress) {
+    this.stream = stream;
+    this.input = ByteBuffer.wrap(new byte[STREAM_WINDOW_BYTES]);
+    this.chunked = false;
+    this.progress = progress;
+  }
+
+  /**
+   * loads the graph in the given DOT file.
+   *
+   * @param file the DOT file.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   * @throws UnsupportedDotException if the file uses DOT features the loader does not handle.
+   */
+  static Graph<String> load(Path file, LoadProgress progress)
+      throws IOException, UnsupportedDotException {
+    if (InputFiles.isGzip(file)) {
+      try (InputStream stream = InputFiles.open(file, progress)) {
+        return new DotStreamLoader(stream, progress).parse();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r");
+        FileChannel channel = raf.getChannel()) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new UnsupportedDotException("The file is too large to map");
+      }
+      ByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (channel.size() >= Long.getLong(PARALLEL_MIN_PROPERTY, PARALLEL_MIN_BYTES)) {
+        int chunkBytes = Math.max(1, Integer.getInteger(CHUNK_PROPERTY, MIN_CHUNK_BYTES));
+        Graph<String> graph = parseInChunks(input, chunkBytes, progress);
+        if (graph != null) {
+          return graph;
+        }
+        progress.restart();
+      }
+      return new DotStreamLoader(input, 0, input.limit(), false, progress).parse();
+    }
+  }
+
+  /**
+   * parses the whole file in one pass.
+   *
+   * @return the graph.
+   * @throws UnsupportedDotException if the file uses DOT features the loader does not handle.
+   */
+  private Graph<String> parse() throws UnsupportedDotException {
+    parseHeader();
+    ChunkBuffer buffer = new ChunkBuffer();
+    parseStatements(buffer);
+    position++;
+
+    skipSpace();
+    if (peek() >= 0) {
+      throw new UnsupportedDotException("Unexpected content after the graph");
+    }
+    return ChunkBuffer.merge(List.of(buffer));
+  }
+
+  /**
+   * parses statements appended to a graph, which replace its old closing brace and end with a new
+   * closing brace of their own.
+   *
+   * @param input the appended bytes, starting at the old closing brace.
+   * @return the verticies and edges of the appended statements.
+   * @throws UnsupportedDotException if the appended bytes are not plain statements followed by
+   *     the closing brace.
+   */
+  static ChunkBuffer parseAppended(ByteBuffer input) throws UnsupportedDotException {
+    LoadProgress progress = new LoadProgress(input.limit());
+    DotStreamLoader parser = new DotStreamLoader(input, 0, input.limit(), false, progress);
+    ChunkBuffer buffer = new ChunkBuffer();
+    parser.parseStatements(buffer);
+    parser.position++;
+
+    parser.skipSpace();
+    if (parser.peek() >= 0) {
+      throw new UnsupportedDotException("Unexpected content after the graph");
+    }
+    return buffer;
+  }
+
+  /**
+   * parses the statements of the file in line aligned chunks across the fork join pool.
+   *
+   * @param input the whole file.
+   * @param chunkBytes the least number of bytes of statements in a chunk.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph, or null if the file cannot be split into chunks that parse on their own.
+   */
+  private static Graph<String> parseInChunks(
+      ByteBuffer input, int chunkBytes, LoadProgress progress) {
+    // The header and the closing brace are found in one pass, and only the statements are split
+    DotStreamLoader header = new DotStreamLoader(input, 0, input.limit(), false, progress);
+    int bodyEnd = input.limit() - 1;
+    while (bodyEnd >= 0 && Character.isWhitespace(input.get(bodyEnd))) {
+      bodyEnd--;
+    }
+    try {
+      header.parseHeader();
+    } catch (UnsupportedDotException e) {
+      return null;
+    }
+    int bodyStart = header.position;
+    if (bodyEnd < bodyStart || input.get(bodyEnd) != '}') {
+      return null;
+    }
+
+    int bodyBytes = bodyEnd - bodyStart;
+    int chunks =
+        Math.max(
+            1,
+            Math.min(
+                bodyBytes / chunkBytes,
+                ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD));
+    int[] bounds = new int[chunks + 1];
+    bounds[0] = bodyStart;
+    bounds[chunks] = bodyEnd;
+    for (int chunk = 1; chunk < chunks; chunk++) {
+      // Move every split forward to the start of the next line, never behind the split before it
+      int split = bodyStart + (int) ((long) bodyBytes * chunk / chunks);
+      split = Math.max(bounds[chunk - 1], split);
+      while (split < bodyEnd && input.get(split) != '\n') {
+        split++;
+      }
+      bounds[chunk] = Math.min(bodyEnd, split + 1);
+    }
+
+    List<ChunkBuffer> buffers =
+        IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(
+                chunk -> {
+                  ChunkBuffer buffer = new ChunkBuffer();
+                  DotStreamLoader parser =
+                      new DotStreamLoader(
+                          input, bounds[chunk], bounds[chunk + 1], true, progress);
+                  try {
+                    parser.parseStatements(buffer);
+                  } catch (UnsupportedDotException e) {
+                    return null;
+                  }
+                  return buffer;
+                })
+            .collect(Collectors.toList());
+
+    if (buffers.contains(null)) {
+      return null;
+    }
+    return ChunkBuffer.merge(buffers);
+  }
+
+  /**
+   * parses the {@code digraph} keyword, the optional graph name and the opening brace.
+   *
+   * @throws UnsupportedDotException if the file does not start with a plain digraph.
+   */
+  private void parseHeader() throws UnsupportedDotException {
+    skipSpace();
+    if (!"digraph".equals(readId())) {
+      throw new UnsupportedDotException("Only a plain digraph is handled");
+    }
+    skipSpace();
+    if (peek() != '{') {
+      // The name of the graph is not needed
+      readId();
+      skipSpace();
+    }
+    expect('{');
+  }
+
+  /**
+   * parses statements up to the closing brace of the graph, or up to the end of the chunk.
+   *
+   * @param buffer the buffer to add the verticies and edges to.
+   * @throws UnsupportedDotException if a statement uses DOT features the loader does not handle.
+   */
+  private void parseStatements(ChunkBuffer buffer) throws UnsupportedDotException {
+    long reportedOffset = offset();
+    int reportedEdges = 0;
+    skipSpace();
+    while (chunked ? position < limit : peek() != '}') {
+      // Report the progress now and then, so readers are not slowed down by every statement
+      if (offset() - reportedOffset >= PROGRESS_BYTES) {
+        reportProgress(reportedOffset, reportedEdges, buffer);
+        reportedOffset = offset();
+        reportedEdges = buffer.edgeCount();
+      }
+
+      int source = buffer.vertex(readVertex());
+      skipSpace();
+
+      // Each arrow of a chain adds an edge from the vertex before it
+      while (peek() == '-' && peek(1) == '>') {
+        position += 2;
+        skipSpace();
+        int destination = buffer.vertex(readVertex());
+        buffer.edge(source, destination);
+        source = destination;
+        skipSpace();
+      }
+
+      if (peek() == ';') {
+        position++;
+        skipSpace();
+      }
+    }
+    reportProgress(reportedOffset, reportedEdges, buffer);
+  }
+
+  /**
+   * reports the bytes and edges parsed since the last report. A stream counts its own bytes as it
+   * is read, so only the edges are reported for it.
+   *
+   * @param reportedOffset the offset in the file at the last report.
+   * @param reportedEdges the number of edges in the buffer at the last report.
+   * @param buffer the buffer the statements are parsed into.
+   */
+  private void reportProgress(long reportedOffset, int reportedEdges, ChunkBuffer buffer) {
+    long bytes = stream == null ? offset() - reportedOffset : 0;
+    progress.advance(bytes, buffer.edgeCount() - reportedEdges);
+  }
+
+  /**
+   * returns the offset of the current position in the file.
+   *
+   * @return the offset in bytes.
+   */
+  private long offset() {
+    return discarded + position;
+  }
+
+  /**
+   * reads a vertex id, which must not be a DOT keyword.
+   *
+   * @return the vertex id.
+   * @throws UnsupportedDotException if there is no plain id at the current position.
+   */
+  private String readVertex() throws UnsupportedDotException {
+    String id = readId();
+    for (String keyword : new String[] {"node", "edge", "graph", "digraph", "subgraph", "strict"}) {
+      if (keyword.equalsIgnoreCase(id)) {
+        throw new UnsupportedDotException("Unexpected keyword " + id);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * reads a plain DOT id, either a run of digits or a name made of letters, digits and
+   * underscores that does not start with a digit.
+   *
+   * @return the id.
+   * @throws UnsupportedDotException if there is no plain id at the current position.
+   */
+  private String readId() throws UnsupportedDotException {
+    // The window keeps the token from here on if it is refilled part way through the token
+    tokenStart = position;
+    int first = peek();
+    if (isDigit(first)) {
+      while (isDigit(peek())) {
+        position++;
+      }
+    } else if (isLetter(first)) {
+      while (isLetter(peek()) || isDigit(peek())) {
+        position++;
+      }
+    }
+
+    // Anything glued to the id, like a decimal point or a quote, is left to the full parser
+    if (position == tokenStart || isLetter(peek()) || peek() == '.' || peek() == '"') {
+      throw new UnsupportedDotException("Unexpected character at byte " + offset());
+    }
+
+    int start = tokenStart;
+    int length = position - start;
+    tokenStart = -1;
+    if (length > token.length) {
+      token = Arrays.copyOf(token, Math.max(length, token.length * 2));
+    }
+    input.get(start, token, 0, length);
+    return new String(token, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * skips whitespace and comments, including lines starting with {@code #}.
+   *
+   * @throws UnsupportedDotException if a block comment is never closed.
+   */
+  private void skipSpace() throws UnsupportedDotException {
+    while (true) {
+      int next = peek();
+      if (next == ' ' || next == '\t' || next == '\r' || next == '\n' || next == '\f') {
+        position++;
+      } else if (next == '/' && peek(1) == '/') {
+        skipLine();
+      } else if (next == '#' && (offset() == 0 || input.get(position - 1) == '\n')) {
+        skipLine();
+      } else if (next == '/' && peek(1) == '*') {
+        if (chunked) {
+          // A block comment may run across the edge of the chunk
+          throw new UnsupportedDotException("Block comment in a chunk");
+        }
+        position += 2;
+        while (!(peek() == '*' && peek(1) == '/')) {
+          if (peek() < 0) {
+            throw new UnsupportedDotException("Unclosed comment");
+          }
+          position++;
+        }
+        position += 2;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /** skips to the start of the next line. */
+  private void skipLine() {
+    while (peek() >= 0 && peek() != '\n') {
+      position++;
+    }
+  }
+
+  /**
+   * steps over the given character.
+   *
+   * @param expected the character that must come next.
+   * @throws UnsupportedDotException if a different character comes next.
+   */
+  private void expect(char expected) throws UnsupportedDotException {
+    if (peek() != expected) {
+      throw new UnsupportedDotException("Expected " + expected + " at byte " + offset());
+    }
+    position++;
+  }
+
+  private int peek() {
+    return peek(0);
+  }
+
+  /**
+   * returns the byte at the given offset from the current position.
+   *
+   * @param offset the offset from the current position.
+   * @return the byte, or -1 past the end of the file.
+   */
+  private int peek(int offset) {
+    if (position + offset >= limit && stream != null && !streamEnded) {
+      refill();
+    }
+    int index = position + offset;
+    return index < limit ? input.get(index) & 0xFF : -1;
+  }
+
+  /**
+   * reads more of the stream into the window. The bytes before the current token, apart from the
+   * one just before it, are dropped to make room, and the window only grows if a single token
+   * fills it.
+   */
+  private void refill() {
+    byte[] window = input.array();
+    int keepFrom = Math.max(0, (tokenStart >= 0 ? tokenStart : position) - 1);
+    if (keepFrom == 0 && limit == window.length) {
+      window = Arrays.copyOf(window, window.length * 2);
+      input = ByteBuffer.wrap(window);
+    } else {
+      System.arraycopy(window, keepFrom, window, 0, limit - keepFrom);
+      limit -= keepFrom;
+      position -= keepFrom;
+      if (tokenStart >= 0) {
+        tokenStart -= keepFrom;
+      }
+      discarded += keepFrom;
+    }
+
+    try {
+      // Fill the whole free part of the window, so the parser is not held up by small reads
+      int read = stream.readNBytes(window, limit, window.length - limit);
+      limit += read;
+      streamEnded = read == 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+  }
+}
@@ -0,0 +1,244 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import nz.ac.auckland.se281.datastructures.Graph;
+
+/**
+ * Loads a graph from an edge list or an adjacency list, reading the bytes of the memory mapped
+ * file in place. Every line of an edge list is a source and a destination, and any further
+ * columns, such as weights, are ignored. Every line of an adjacency list is a vertex followed by
+ * every vertex it has an edge to. In both formats the tokens of a line are separated by spaces or
+ * tabs, a line with a single vertex declares that vertex, and blank lines and lines starting with
+ * {@code #} or {@code %} are skipped.
+ *
+ * <p>Numeric labels are read straight into their value and looked up by it, see {@link
+ * ChunkBuffer#vertex(int)}, so no string is made for a token whose vertex has been seen before.
+ * Labels with a sign or leading zeros, or that are not numbers, are read as strings.
+ *
+ * <p>Compressed files and files too large to map are read from a stream instead, through a window
+ * that is refilled a line at a time.
+ */
+final class EdgeListLoader {
+
+  private static final int PROGRESS_BYTES = 1 << 16;
+  private static final int STREAM_WINDOW_BYTES = 1 << 22;
+
+  private final boolean adjacency;
+  private final ChunkBuffer buffer = new ChunkBuffer();
+  private final LoadProgress progress;
+  private final boolean reportBytes;
+  private ByteBuffer input;
+  private int position;
+  private int limit;
+  private byte[] token = new byte[16];
+
+  /**
+   * creates a loader.
+   *
+   * @param format the format of the file, either an edge list or an adjacency list.
+   * @param progress the progress to report the lines parsed to.
+   * @param reportBytes whether to report the bytes parsed, rather than leave that to a stream.
+   */
+  private EdgeListLoader(GraphFormat format, LoadProgress progress, boolean reportBytes) {
+    this.adjacency = format == GraphFormat.ADJACENCY_LIST;
+    this.progress = progress;
+    this.reportBytes = reportBytes;
+  }
+
+  /**
+   * loads the graph in the given edge list or adjacency list.
+   *
+   * @param file the graph file.
+   * @param format the format of the file.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  static Graph<String> load(Path file, GraphFormat format, LoadProgress progress)
+      throws IOException {
+    if (InputFiles.isGzip(file) || file.toFile().length() > Integer.MAX_VALUE) {
+      try (InputStream stream = InputFiles.open(file, progress)) {
+        return loadStream(stream, format, progress);
+      }
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r");
+        FileChannel channel = raf.getChannel()) {
+      EdgeListLoader loader = new EdgeListLoader(format, progress, true);
+      loader.parseLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      return ChunkBuffer.merge(List.of(loader.buffer));
+    }
+  }
+
+  /**
+   * parses lines appended to an edge list or an adjacency list.
+   *
+   * @param input the appended lines.
+   * @param format the format of the file.
+   * @return the verticies and edges of the appended lines.
+   */
+  static ChunkBuffer parseAppended(ByteBuffer input, GraphFormat format) {
+    EdgeListLoader loader = new EdgeListLoader(format, new LoadProgress(input.limit()), true);
+    loader.parseLines(input);
+    return loader.buffer;
+  }
+
+  /**
+   * loads the graph from a stream, parsing the whole lines in the window every time it is filled
+   * and carrying the last partial line over to the next fill.
+   *
+   * @param stream the stream of the whole file.
+   * @param format the format of the file.
+   * @param progress the progress to report the edges parsed to. The stream reports the bytes.
+   * @return the graph.
+   * @throws IOException if the stream cannot be read.
+   */
+  private static Graph<String> loadStream(
+      InputStream stream, GraphFormat format, LoadProgress progress) throws IOException {
+    EdgeListLoader loader = new EdgeListLoader(format, progress, false);
+    byte[] window = new byte[STREAM_WINDOW_BYTES];
+    int filled = 0;
+    while (true) {
+      int read = stream.read(window, filled, window.length - filled);
+      if (read < 0) {
+        // The last line does not need a newline
+        loader.parseLines(ByteBuffer.wrap(window, 0, filled));
+        return ChunkBuffer.merge(List.of(loader.buffer));
+      }
+      filled += read;
+
+      int lineEnd = filled;
+      while (lineEnd > 0 && window[lineEnd - 1] != '\n') {
+        lineEnd--;
+      }
+      if (lineEnd == 0) {
+        if (filled == window.length) {
+          // A single line fills the window, so make room for the rest of it
+          window = Arrays.copyOf(window, window.length * 2);
+        }
+        continue;
+      }
+      loader.parseLines(ByteBuffer.wrap(window, 0, lineEnd));
+      System.arraycopy(window, lineEnd, window, 0, filled - lineEnd);
+      filled -= lineEnd;
+    }
+  }
+
+  /**
+   * parses every line of the input into the buffer.
+   *
+   * @param lines whole lines, apart from the last line of the file which may have no newline.
+   */
+  private void parseLines(ByteBuffer lines) {
+    input = lines;
+    position = lines.position();
+    limit = lines.limit();
+    int reportedPosition = position;
+    int reportedEdges = buffer.edgeCount();
+
+    while (position < limit) {
+      // Report the progress now and then, so readers are not slowed down by every line
+      if (position - reportedPosition >= PROGRESS_BYTES) {
+        progress.advance(
+            reportBytes ? position - reportedPosition : 0, buffer.edgeCount() - reportedEdges);
+        reportedPosition = position;
+        reportedEdges = buffer.edgeCount();
+      }
+
+      skipBlanks();
+      int first = position < limit ? input.get(position) : '\n';
+      if (first == '\n' || first == '#' || first == '%') {
+        skipLine();
+        continue;
+      }
+
+      int source = readVertex();
+      skipBlanks();
+      while (!isLineEnd()) {
+        buffer.edge(source, readVertex());
+        skipBlanks();
+        if (!adjacency) {
+          // Any further columns of an edge list, such as a weight, are not part of the graph
+          break;
+        }
+      }
+      skipLine();
+    }
+    progress.advance(
+        reportBytes ? position - reportedPosition : 0, buffer.edgeCount() - reportedEdges);
+  }
+
+  /**
+   * reads the vertex at the current position. Numeric labels are read as their value, and any
+   * other label as a string.
+   *
+   * @return the local id of the vertex.
+   */
+  private int readVertex() {
+    int start = position;
+    long value = 0;
+    boolean numeric = true;
+    while (position < limit) {
+      int next = input.get(position);
+      if (next == ' ' || next == '\t' || next == '\r' || next == '\n') {
+        break;
+      }
+      if (numeric && next >= '0' && next <= '9' && value <= Integer.MAX_VALUE) {
+        value = value * 10 + (next - '0');
+      } else {
+        numeric = false;
+      }
+      position++;
+    }
+
+    int length = position - start;
+    // A leading zero would be lost by the value, so such labels keep their string
+    if (numeric && value <= Integer.MAX_VALUE && (length == 1 || input.get(start) != '0')) {
+      return buffer.vertex((int) value);
+    }
+    if (length > token.length) {
+      token = Arrays.copyOf(token, Math.max(length, token.length * 2));
+    }
+    input.get(start, token, 0, length);
+    return buffer.vertex(new String(token, 0, length, StandardCharsets.UTF_8));
+  }
+
+  /** skips spaces, tabs and carriage returns. */
+  private void skipBlanks() {
+    while (position < limit) {
+      int next = input.get(position);
+      if (next != ' ' && next != '\t' && next != '\r') {
+        return;
+      }
+      position++;
+    }
+  }
+
+  /**
+   * checks whether the current position is at the end of a line.
+   *
+   * @return boolean value whether the line has no more tokens.
+   */
+  private boolean isLineEnd() {
+    return position == limit || input.get(position) == '\n';
+  }
+
+  /** skips to the start of the next line. */
+  private void skipLine() {
+    while (position < limit && input.get(position) != '\n') {
+      position++;
+    }
+    if (position < limit) {
+      position++;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import nz.ac.auckland.se281.datastructures.Graph;
+
+/**
+ * A least recently used cache of loaded graphs, so reopening a file hands back the same graph
+ * along with every index and property it has computed. Graphs are keyed by their absolute path,
+ * and an entry is only used while the size and modification time of the file are unchanged.
+ *
+ * <p>The cache is bounded by an estimate of the heap its graphs use, which is a quarter of the
+ * maximum heap unless the {@code graphcalc.cache.maxBytes} system property says otherwise. The
+ * least recently used graphs are evicted until the cache fits, and a graph that does not fit on
+ * its own is not cached at all.
+ *
+ * <p>Graphs are only held softly, so a cached graph that nothing else holds on to, such as an idle
+ * graph of a workspace, is still released if memory runs short, however much budget is left. A
+ * released graph is loaded again the next time it is asked for.
+ *
+ * <p>The cache can be shared between threads. A file asked for while it is already being loaded
+ * waits for that load instead of reading the file again, so every caller gets the same graph.
+ */
+public final class GraphCache {
+
+  /** A cached graph, with the file state it was loaded from and its last size estimate. */
+  private static final class Entry {
+    private final Reference<Graph<String>> graph;
+    private final long modified;
+    private final long size;
+    private long bytes;
+
+    private Entry(Reference<Graph<String>> graph, long modified, long size) {
+      this.graph = graph;
+      this.modified = modified;
+      this.size = size;
+    }
+  }
+
+  /** A graph being loaded, with the file state it is being loaded from. */
+  private static final class Pending {
+    private final CompletableFuture<Graph<String>> graph = new CompletableFuture<>();
+    private final long modified;
+    private final long size;
+
+    private Pending(long modified, long size) {
+      this.modified = modified;
+      this.size = size;
+    }
+  }
+
+  private final long maxBytes;
+  private final Function<Graph<String>, Reference<Graph<String>>> holder;
+  private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Path, Pending> pending = new HashMap<>();
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /** Creates a cache bounded by the configured memory budget. */
+  public GraphCache() {
+    this(Long.getLong("graphcalc.cache.maxBytes", Runtime.getRuntime().maxMemory() / 4));
+  }
+
+  /**
+   * Creates a cache bounded by the given memory budget.
+   *
+   * @param maxBytes the most heap the cached graphs may use, by estimate.
+   */
+  public GraphCache(long maxBytes) {
+    this(maxBytes, SoftReference::new);
+  }
+
+  /**
+   * Creates a cache bounded by the given memory budget, holding each graph through the reference
+   * the given function makes for it instead of a soft reference.
+   *
+   * @param maxBytes the most heap the cached graphs may use, by estimate.
+   * @param holder makes the reference a cached graph is held through.
+   */
+  public GraphCache(long maxBytes, Function<Graph<String>, Reference<Graph<String>>> holder) {
+    this.maxBytes = maxBytes;
+    this.holder = holder;
+  }
+
+  /**
+   * returns the graph in the given file, from the cache if the file has not changed since it
+   * was loaded, and loading and caching it otherwise.
+   *
+   * @param file the graph file.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  public Graph<String> load(Path file) throws IOException {
+    return load(file, new LoadProgress(file.toFile().length()));
+  }
+
+  /**
+   * returns the graph in the given file, from the cache if the file has not changed since it
+   * was loaded, and loading and caching it otherwise, reporting how far the load has got. If the
+   * file is already being loaded, the load is waited for and counted as a hit.
+   *
+   * @param file the graph file.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  public Graph<String> load(Path file, LoadProgress progress) throws IOException {
+    Path key = file.toAbsolutePath().normalize();
+    File source = key.toFile();
+    long modified = source.lastModified();
+    long size = source.length();
+
+    Pending load;
+    boolean loader;
+    synchronized (this) {
+      dropReleased();
+      Entry entry = entries.get(key);
+      Graph<String> cached = entry != null ? entry.graph.get() : null;
+      if (cached != null && entry.modified == modified && entry.size == size) {
+        hits++;
+        // The graph may have built more indices since it was last weighed
+        weigh(entry, cached);
+        if (entry.bytes > maxBytes) {
+          // It has outgrown the budget on its own, so only it is evicted
+          entries.remove(key);
+          bytes -= entry.bytes;
+          evictions++;
+        } else {
+          evictToFit();
+        }
+        progress.finish(cached.getEdges().size());
+        return cached;
+      }
+      if (entry != null) {
+        // The file has changed, or the graph has just been released, so the entry is dropped
+        entries.remove(key);
+        bytes -= entry.bytes;
+      }
+
+      load = pending.get(key);
+      loader = load == null || load.modified != modified || load.size != size;
+      if (loader) {
+        misses++;
+        load = new Pending(modified, size);
+        pending.put(key, load);
+      } else {
+        hits++;
+      }
+    }
+
+    if (!loader) {
+      return await(load, progress);
+    }
+
+    // Load outside the lock, so a slow load does not hold up hits on other graphs
+    Graph<String> graph;
+    try {
+      graph = GraphLoader.load(file, progress);
+    } catch (IOException | RuntimeException | Error e) {
+      synchronized (this) {
+        pending.remove(key, load);
+      }
+      load.graph.completeExceptionally(e);
+      throw e;
+    }
+    Entry entry = new Entry(holder.apply(graph), modified, size);
+
+    synchronized (this) {
+      pending.remove(key, load);
+      Entry previous = entries.remove(key);
+      if (previous != null) {
+        bytes -= previous.bytes;
+      }
+      // A graph that does not fit on its own is not cached, so the others are not evicted for it
+      entry.bytes = graph.estimateMemoryBytes();
+      if (entry.bytes <= maxBytes) {
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        evictToFit();
+      }
+    }
+    load.graph.complete(graph);
+    return graph;
+  }
+
+  /**
+   * waits for a graph that another caller is loading.
+   *
+   * @param load the load to wait for.
+   * @param progress the progress to report the finished load to.
+   * @return the graph.
+   * @throws IOException if the file could not be read.
+   */
+  private static Graph<String> await(Pending load, LoadProgress progress) throws IOException {
+    Graph<String> graph;
+    try {
+      graph = load.graph.join();
+    } catch (CompletionException e) {
+      // The waiter fails the same way as the caller that loaded the file
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+    progress.finish(graph.getEdges().size());
+    return graph;
+  }
+
+  /**
+   * measures an entry again, and updates the total.
+   *
+   * @param entry the entry to measure.
+   * @param graph the graph of the entry.
+   */
+  private void weigh(Entry entry, Graph<String> graph) {
+    long estimate = graph.estimateMemoryBytes();
+    bytes += estimate - entry.bytes;
+    entry.bytes = estimate;
+  }
+
+  /** removes the entries whose graphs have been released, so they no longer count to the total. */
+  private void dropReleased() {
+    Iterator<Entry> cached = entries.values().iterator();
+    while (cached.hasNext()) {
+      Entry entry = cached.next();
+      if (entry.graph.get() == null) {
+        cached.remove();
+        bytes -= entry.bytes;
+      }
+    }
+  }
+
+  /** evicts the least recently used graphs until the cache fits in its budget. */
+  private void evictToFit() {
+    Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      Entry entry = eldest.next().getValue();
+      eldest.remove();
+      bytes -= entry.bytes;
+      evictions++;
+    }
+  }
+
+  /**
+   * returns the number of loads answered from the cache.
+   *
+   * @return the hit count.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * returns the number of loads that had to read the file.
+   *
+   * @return the miss count.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * returns the number of graphs evicted to keep the cache in its budget.
+   *
+   * @return the eviction count.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * returns the number of graphs in the cache.
+   *
+   * @return the number of cached graphs.
+   */
+  public synchronized int getSize() {
+    dropReleased();
+    return entries.size();
+  }
+
+  /**
+   * returns the estimated heap used by the cached graphs.
+   *
+   * @return the estimated size in bytes.
+   */
+  public synchronized long getBytes() {
+    dropReleased();
+    return bytes;
+  }
+
+  /**
+   * returns the memory budget of the cache.
+   *
+   * @return the most heap the cached graphs may use, in bytes.
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+}
@@ -0,0 +1,81 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The text formats a graph file can be written in. A file is an edge list or an adjacency list if
+ * its name ends with one of their extensions, ignoring a {@code .gz} suffix, or if its first line
+ * is a {@code #} comment naming the format, such as {@code # edge list}. Any other file is DOT.
+ */
+enum GraphFormat {
+  /** A DOT digraph. */
+  DOT,
+  /** One edge per line, as a source and a destination separated by whitespace. */
+  EDGE_LIST(".edges", ".edgelist", ".el", ".tsv"),
+  /** One vertex per line, followed by every vertex it has an edge to. */
+  ADJACENCY_LIST(".adj", ".adjlist");
+
+  private static final int HEADER_BYTES = 256;
+
+  private final String[] extensions;
+
+  GraphFormat(String... extensions) {
+    this.extensions = extensions;
+  }
+
+  /**
+   * works out the format of the given file, from its name or else from its first line.
+   *
+   * @param file the graph file.
+   * @return the format of the file.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  static GraphFormat of(Path file) throws IOException {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".gz")) {
+      name = name.substring(0, name.length() - ".gz".length());
+    }
+    for (GraphFormat format : values()) {
+      for (String extension : format.extensions) {
+        if (name.endsWith(extension)) {
+          return format;
+        }
+      }
+    }
+
+    // Spaces, dashes and underscores are ignored, so "# edge-list" and "#EdgeList" both match
+    String header = readHeader(file).toLowerCase(Locale.ROOT).replaceAll("[\\s_-]", "");
+    if (header.startsWith("#")) {
+      if (header.contains("edgelist")) {
+        return EDGE_LIST;
+      }
+      if (header.contains("adjacencylist") || header.contains("adjlist")) {
+        return ADJACENCY_LIST;
+      }
+    }
+    return DOT;
+  }
+
+  /**
+   * reads the start of the first line of the given file.
+   *
+   * @param file the graph file.
+   * @return the start of the first line.
+   * @throws IOException if the file cannot be read.
+   */
+  private static String readHeader(Path file) throws IOException {
+    try (InputStream in = InputFiles.open(file, new LoadProgress(0))) {
+      byte[] header = in.readNBytes(HEADER_BYTES);
+      int length = 0;
+      while (length < header.length && header[length] != '\n') {
+        length++;
+      }
+      return new String(header, 0, length, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import nz.ac.auckland.se281.datastructures.Graph;
+
+/**
+ * Loads graphs from DOT files, edge lists and adjacency lists, which may be gzip compressed, see
+ * {@link GraphFormat}. DOT files written in the plain subset used by the test cases are read by
+ * the streaming loader, and any other DOT file is handed to the full DOT parser. Large files also
+ * keep a binary snapshot next to them, see {@link SnapshotStore}.
+ */
+public final class GraphLoader {
+
+  private GraphLoader() {}
+
+  /**
+   * loads the graph in the given file. Large files are read from their binary snapshot when it
+   * is still up to date, and get a new snapshot otherwise.
+   *
+   * @param file the graph file.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  public static Graph<String> load(Path file) throws IOException {
+    return load(file, new LoadProgress(file.toFile().length()));
+  }
+
+  /**
+   * loads the graph in the given file, reporting how far the load has got.
+   *
+   * @param file the graph file.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  public static Graph<String> load(Path file, LoadProgress progress) throws IOException {
+    Graph<String> graph;
+    if (!SnapshotStore.isWorthSnapshotting(file.toFile().length())) {
+      graph = parse(file, progress);
+    } else {
+      SnapshotStore.SourceStamp stamp = SnapshotStore.SourceStamp.of(file);
+      graph = SnapshotStore.read(file, stamp);
+      if (graph == null) {
+        // Checksum the source before parsing, so a change made while parsing makes the snapshot
+        // stale
+        stamp.checksum();
+        graph = parse(file, progress);
+        SnapshotStore.write(file, stamp, graph);
+      }
+    }
+
+    progress.finish(graph.getEdges().size());
+    return graph;
+  }
+
+  /**
+   * parses the graph in the given file.
+   *
+   * @param file the graph file.
+   * @param progress the progress to report the bytes read and edges parsed to.
+   * @return the graph.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  private static Graph<String> parse(Path file, LoadProgress progress) throws IOException {
+    GraphFormat format = GraphFormat.of(file);
+    if (format != GraphFormat.DOT) {
+      return EdgeListLoader.load(file, format, progress);
+    }
+
+    try {
+      return DotStreamLoader.load(file, progress);
+    } catch (UnsupportedDotException e) {
+      // The streaming loader has no side effects, so the parser can start again from the top
+      progress.restart();
+      return ParserGraphLoader.load(file, progress);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.zip.CRC32C;
+import nz.ac.auckland.se281.datastructures.Graph;
+
+/**
+ * Watches a graph file for changes, keeping an up to date graph of it. A DOT file that grows by
+ * having statements written in place of its closing brace, followed by a new closing brace, only
+ * has the appended bytes parsed, and the new verticies and edges are added to the graph with
+ * {@link Graph#extend} instead of loading the whole file again. Edge lists and adjacency lists
+ * are handled the same way, with lines appended to the end of the file. The part of the file
+ * before the appended bytes is checksummed first, so a file that was rewritten rather than
+ * appended to is loaded again in full, as is a compressed file or an append the streaming loader
+ * cannot parse.
+ *
+ * <p>A DOT file that does not end with a closing brace, or a list whose last line has no newline,
+ * is still being written, so it is left alone until the next change. A change that fails to load
+ * keeps the last graph.
+ *
+ * <p>The directory of the file is watched by a {@link WatchService} on a daemon thread, which is
+ * stopped by {@link #close()}. Every graph handed out stays unchanged, so a reader holding one is
+ * never affected by a later change.
+ */
+public final class GraphWatcher implements Closeable {
+
+  private final Path file;
+  private final GraphFormat format;
+  private final WatchService service;
+  private volatile Graph<String> graph;
+  private long size;
+  private long modified;
+  private long bodyEnd = -1;
+  private long bodyChecksum;
+  private long appends;
+  private long reloads;
+
+  /**
+   * starts watching a file whose graph has already been loaded.
+   *
+   * @param file the DOT file.
+   * @param graph the graph loaded from the file.
+   * @param size the size of the file when the graph was loaded.
+   * @param modified the modification time of the file when the graph was loaded.
+   * @throws IOException if the file cannot be read or its directory cannot be watched.
+   */
+  public GraphWatcher(Path file, Graph<String> graph, long size, long modified)
+      throws IOException {
+    this.file = file.toAbsolutePath().normalize();
+    this.graph = graph;
+    this.size = size;
+    this.modified = modified;
+    this.format = GraphFormat.of(this.file);
+
+    service = this.file.getFileSystem().newWatchService();
+    this.file
+        .getParent()
+        .register(
+            service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    Thread thread = new Thread(this::watch, "graph-watcher");
+    thread.setDaemon(true);
+    thread.start();
+
+    // Find where the loaded graph ends, and catch up with any change made since it was loaded
+    refresh();
+  }
+
+  /** waits for changes to the directory, and refreshes the graph whenever the file changes. */
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          // An overflow may have dropped an event for the file
+          changed |=
+              event.kind() == StandardWatchEventKinds.OVERFLOW
+                  || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        if (changed) {
+          refresh();
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // The watcher has been closed
+    }
+  }
+
+  /**
+   * checks the file for changes now, instead of waiting for the watch service to report them, and
+   * brings the graph up to date.
+   */
+  public synchronized void refresh() {
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r");
+        FileChannel channel = raf.getChannel()) {
+      long currentSize = channel.size();
+      long currentModified = Files.getLastModifiedTime(file).toMillis();
+      boolean changed = currentSize != size || currentModified != modified;
+      if (!changed && bodyEnd >= 0) {
+        return;
+      }
+
+      if (InputFiles.isGzip(file) || currentSize > Integer.MAX_VALUE) {
+        // There is no end of the graph to find, so every change is loaded in full
+        if (changed) {
+          reload(currentSize, currentModified, -1, 0);
+        }
+        return;
+      }
+
+      ByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, currentSize);
+      int currentBodyEnd = findBodyEnd(input);
+      if (currentBodyEnd < 0) {
+        // The file is still being written
+        return;
+      }
+      CRC32C checksum = new CRC32C();
+      if (!changed) {
+        // The graph was loaded from the file as it is now, so only where it ends is needed
+        checksum.update(input.slice(0, currentBodyEnd));
+        bodyEnd = currentBodyEnd;
+        bodyChecksum = checksum.getValue();
+        return;
+      }
+
+      if (bodyEnd >= 0 && currentBodyEnd >= bodyEnd && currentSize > size) {
+        checksum.update(input.slice(0, (int) bodyEnd));
+        if (checksum.getValue() == bodyChecksum) {
+          int appendedBytes = (int) (currentSize - bodyEnd);
+          ChunkBuffer appended = parseAppended(input.slice((int) bodyEnd, appendedBytes));
+          if (appended != null) {
+            checksum.update(input.slice((int) bodyEnd, currentBodyEnd - (int) bodyEnd));
+            graph = appended.appendTo(graph);
+            appends++;
+            size = currentSize;
+            modified = currentModified;
+            bodyEnd = currentBodyEnd;
+            bodyChecksum = checksum.getValue();
+            return;
+          }
+        }
+        checksum.reset();
+      }
+
+      checksum.update(input.slice(0, currentBodyEnd));
+      reload(currentSize, currentModified, currentBodyEnd, checksum.getValue());
+    } catch (IOException | RuntimeException e) {
+      // A file that cannot be read or parsed right now keeps the last graph until it changes again
+    }
+  }
+
+  /**
+   * parses the statements or lines appended to the file.
+   *
+   * @param appended the appended bytes, starting at the old end of the graph.
+   * @return the verticies and edges of the appended statements, or null if they are not plain
+   *     statements that the streaming loader can parse.
+   */
+  private ChunkBuffer parseAppended(ByteBuffer appended) {
+    if (format != GraphFormat.DOT) {
+      return EdgeListLoader.parseAppended(appended, format);
+    }
+    try {
+      return DotStreamLoader.parseAppended(appended);
+    } catch (UnsupportedDotException e) {
+      return null;
+    }
+  }
+
+  /**
+   * loads the whole file again.
+   *
+   * @param currentSize the size of the file now.
+   * @param currentModified the modification time of the file now.
+   * @param currentBodyEnd the offset the graph of the file ends at, or -1 if it cannot be found.
+   * @param currentChecksum the checksum of the file up to the end of its graph.
+   * @throws IOException if the file cannot be read.
+   */
+  private void reload(
+      long currentSize, long currentModified, long currentBodyEnd, long currentChecksum)
+      throws IOException {
+    graph = GraphLoader.load(file);
+    reloads++;
+    size = currentSize;
+    modified = currentModified;
+    bodyEnd = currentBodyEnd;
+    bodyChecksum = currentChecksum;
+  }
+
+  /**
+   * finds where the graph ends, which is the closing brace of a DOT file, skipping any whitespace
+   * after it, or the end of the last line of a list.
+   *
+   * @param input the whole file.
+   * @return the offset the next statements or lines are appended at, or -1 if the file is still
+   *     being written.
+   */
+  private int findBodyEnd(ByteBuffer input) {
+    if (format != GraphFormat.DOT) {
+      int size = input.limit();
+      return size == 0 || input.get(size - 1) == '\n' ? size : -1;
+    }
+
+    int end = input.limit() - 1;
+    while (end >= 0 && Character.isWhitespace(input.get(end))) {
+      end--;
+    }
+    return end >= 0 && input.get(end) == '}' ? end : -1;
+  }
+
+  /**
+   * returns the graph of the file as of the last change.
+   *
+   * @return the graph.
+   */
+  public Graph<String> getGraph() {
+    return graph;
+  }
+
+  /**
+   * returns the number of changes that were added to the graph by parsing only the appended
+   * bytes.
+   *
+   * @return the append count.
+   */
+  public synchronized long getAppends() {
+    return appends;
+  }
+
+  /**
+   * returns the number of changes that loaded the whole file again.
+   *
+   * @return the reload count.
+   */
+  public synchronized long getReloads() {
+    return reloads;
+  }
+
+  /** stops watching the file. */
+  @Override
+  public void close() throws IOException {
+    service.close();
+  }
+}
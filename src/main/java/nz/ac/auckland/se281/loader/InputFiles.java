@@ -0,0 +1,90 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens graph files for reading, decompressing gzip files on the fly. Compressed files are
+ * recognised by their magic number rather than their name, so a {@code .txt.gz} export can be
+ * opened as it is.
+ */
+final class InputFiles {
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int INFLATE_BUFFER_BYTES = 1 << 20;
+
+  /** A stream that reports every byte read from the file to the progress of the load. */
+  private static final class ProgressInputStream extends FilterInputStream {
+    private final LoadProgress progress;
+
+    private ProgressInputStream(InputStream in, LoadProgress progress) {
+      super(in);
+      this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int next = super.read();
+      if (next >= 0) {
+        progress.advance(1, 0);
+      }
+      return next;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        progress.advance(read, 0);
+      }
+      return read;
+    }
+  }
+
+  private InputFiles() {}
+
+  /**
+   * checks whether the given file is gzip compressed.
+   *
+   * @param file the file.
+   * @return boolean value whether the file starts with the gzip magic number.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  static boolean isGzip(Path file) throws IOException {
+    try (InputStream in = new FileInputStream(file.toFile())) {
+      int first = in.read();
+      int second = in.read();
+      return first >= 0 && second >= 0 && (first | (second << 8)) == GZIP_MAGIC;
+    }
+  }
+
+  /**
+   * opens the given file, decompressing it if it is gzip compressed.
+   *
+   * @param file the file.
+   * @param progress the progress to report the bytes read from the file to.
+   * @return the stream of the file's contents.
+   * @throws java.io.FileNotFoundException if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  static InputStream open(Path file, LoadProgress progress) throws IOException {
+    boolean gzip = isGzip(file);
+    InputStream in = new ProgressInputStream(new FileInputStream(file.toFile()), progress);
+    if (!gzip) {
+      return in;
+    }
+
+    try {
+      // Inflate from a large buffer of compressed bytes, rather than many small reads
+      return new GZIPInputStream(in, INFLATE_BUFFER_BYTES);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package nz.ac.auckland.se281.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of loading one file, updated by the threads doing the load and read by anyone
+ * asking how far it has got.
+ */
+public final class LoadProgress {
+
+  private final long totalBytes;
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong edgesIngested = new AtomicLong();
+
+  /**
+   * Creates the progress of a load that has not started yet.
+   *
+   * @param totalBytes the size of the file being loaded.
+   */
+  public LoadProgress(long totalBytes) {
+    this.totalBytes = totalBytes;
+  }
+
+  /**
+   * records that more of the file has been read.
+   *
+   * @param bytes the number of bytes read since the last report.
+   * @param edges the number of edges parsed since the last report.
+   */
+  void advance(long bytes, long edges) {
+    bytesRead.addAndGet(bytes);
+    edgesIngested.addAndGet(edges);
+  }
+
+  /** forgets the progress so far, when a load starts again with another parser. */
+  void restart() {
+    bytesRead.set(0);
+    edgesIngested.set(0);
+  }
+
+  /**
+   * records that the whole file has been read.
+   *
+   * @param edges the number of distinct edges in the loaded graph.
+   */
+  void finish(long edges) {
+    bytesRead.set(totalBytes);
+    edgesIngested.set(edges);
+  }
+
+  /**
+   * returns the size of the file being loaded.
+   *
+   * @return the size in bytes.
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * returns how much of the file has been read so far.
+   *
+   * @return the number of bytes read.
+   */
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  /**
+   * returns how many edges have been parsed so far. Once the load has finished, this is the
+   * number of distinct edges in the graph.
+   *
+   * @return the number of edges ingested.
+   */
+  public long getEdgesIngested() {
+    return edgesIngested.get();
+  }
+}
@@ -0,0 +1,44 @@
+package nz.ac.auckland.se281.loader;
+
+import com.paypal.digraph.parser.GraphEdge;
+import com.paypal.digraph.parser.GraphNode;
+import com.paypal.digraph.parser.GraphParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphBuilder;
+
+/**
+ * Loads a graph with the full DOT parser, which builds the whole parse tree first. Compressed
+ * files are decompressed as the parser reads them.
+ */
+final class ParserGraphLoader {
+
+  private ParserGraphLoader() {}
+
+  /**
+   * loads the graph in the given DOT file.
+   *
+   * @param file the DOT file.
+   * @param progress the progress to report the bytes read to.
+   * @return the graph.
+   * @throws IOException if the file cannot be read.
+   */
+  static Graph<String> load(Path file, LoadProgress progress) throws IOException {
+    try (InputStream input = InputFiles.open(file, progress)) {
+      final GraphParser parser = new GraphParser(input);
+      final GraphBuilder<String> builder = new GraphBuilder<>();
+
+      for (final GraphNode node : parser.getNodes().values()) {
+        builder.addVertex(node.getId());
+      }
+
+      for (final GraphEdge edge : parser.getEdges().values()) {
+        builder.addEdge(edge.getNode1().getId(), edge.getNode2().getId());
+      }
+
+      return builder.build();
+    }
+  }
+}
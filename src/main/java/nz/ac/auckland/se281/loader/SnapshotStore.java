@@ -0,0 +1,200 @@
+package nz.ac.auckland.se281.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphSnapshot;
+
+/**
+ * Keeps a binary snapshot of a loaded graph next to its source file, named after the source with
+ * a {@code .gcs} suffix, so later opens can map the snapshot instead of parsing the source again.
+ * A snapshot is only used while the size of the source still matches the one it was written for,
+ * and either its modification time does too or, when the source has been touched, its checksum
+ * does. The source is only checksummed when the modification time says it may have changed.
+ *
+ * <p>A snapshot stays mapped while its graph is in use, so it is only ever replaced by moving a new
+ * file over it, never written in place.
+ *
+ * <p>Only sources of at least {@code graphcalc.snapshot.minBytes} bytes are snapshotted, which is
+ * 1 MiB unless the system property says otherwise.
+ */
+final class SnapshotStore {
+
+  static final String SUFFIX = ".gcs";
+
+  private static final int MAGIC = 0x47435331;
+  private static final int VERSION = 3;
+  private static final int HEADER_BYTES = 2 * Integer.BYTES + 3 * Long.BYTES;
+  private static final long MIN_SOURCE_BYTES = Long.getLong("graphcalc.snapshot.minBytes", 1 << 20);
+  private static final int CHECKSUM_WINDOW = 1 << 30;
+
+  /** The size and modification time of a source file, and its checksum once computed. */
+  static final class SourceStamp {
+    private final Path source;
+    private final long size;
+    private final long modified;
+    private Long checksum;
+
+    private SourceStamp(Path source, long size, long modified) {
+      this.source = source;
+      this.size = size;
+      this.modified = modified;
+    }
+
+    /**
+     * stamps the given source file with its size and modification time, leaving the checksum to
+     * be computed when it is first needed.
+     *
+     * @param source the source file.
+     * @return the stamp of the source.
+     * @throws java.io.FileNotFoundException if the source does not exist.
+     * @throws IOException if the source cannot be read.
+     */
+    static SourceStamp of(Path source) throws IOException {
+      if (!Files.isRegularFile(source)) {
+        throw new FileNotFoundException(source.toString());
+      }
+      return new SourceStamp(
+          source, Files.size(source), Files.getLastModifiedTime(source).toMillis());
+    }
+
+    /**
+     * returns the checksum of the source, computing it the first time over the memory mapped
+     * file a window at a time.
+     *
+     * @return the checksum.
+     * @throws IOException if the source cannot be read.
+     */
+    long checksum() throws IOException {
+      if (checksum == null) {
+        try (RandomAccessFile raf = new RandomAccessFile(source.toFile(), "r");
+            FileChannel channel = raf.getChannel()) {
+          CRC32C crc = new CRC32C();
+          for (long start = 0; start < size; start += CHECKSUM_WINDOW) {
+            long length = Math.min(CHECKSUM_WINDOW, size - start);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+          }
+          checksum = crc.getValue();
+        }
+      }
+      return checksum;
+    }
+
+    /**
+     * checks whether the source is the one a snapshot header was written for. A matching size and
+     * modification time is trusted without reading the source, and a different size never
+     * matches.
+     *
+     * @param header the header, positioned at the stamp.
+     * @return boolean value whether the snapshot is for the source as it is now.
+     * @throws IOException if the source cannot be read.
+     */
+    private boolean matches(ByteBuffer header) throws IOException {
+      long writtenSize = header.getLong();
+      long writtenModified = header.getLong();
+      long writtenChecksum = header.getLong();
+      if (writtenSize != size) {
+        return false;
+      }
+      return writtenModified == modified || writtenChecksum == checksum();
+    }
+  }
+
+  private SnapshotStore() {}
+
+  /**
+   * checks whether a source of the given size is large enough to be worth a snapshot.
+   *
+   * @param sourceBytes the size of the source file.
+   * @return boolean value whether the source should be snapshotted.
+   */
+  static boolean isWorthSnapshotting(long sourceBytes) {
+    return sourceBytes >= MIN_SOURCE_BYTES;
+  }
+
+  /**
+   * returns the path of the snapshot of the given source.
+   *
+   * @param source the source file.
+   * @return the snapshot file.
+   */
+  static Path snapshotOf(Path source) {
+    return source.resolveSibling(source.getFileName() + SUFFIX);
+  }
+
+  /**
+   * reads the snapshot of the given source, if there is one and it was written for the source as
+   * it is now.
+   *
+   * @param source the source file.
+   * @param stamp the stamp of the source as it is now.
+   * @return the graph, or null if there is no usable snapshot.
+   */
+  static Graph<String> read(Path source, SourceStamp stamp) {
+    Path snapshot = snapshotOf(source);
+    if (!Files.isRegularFile(snapshot)) {
+      return null;
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(snapshot.toFile(), "r");
+        FileChannel channel = raf.getChannel()) {
+      if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+        return null;
+      }
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.getInt() != MAGIC || in.getInt() != VERSION || !stamp.matches(in)) {
+        return null;
+      }
+      return GraphSnapshot.read(in);
+    } catch (IOException e) {
+      // A stale or damaged snapshot is only a cache miss, so the source is parsed instead
+      return null;
+    }
+  }
+
+  /**
+   * writes the snapshot of the given source, replacing any older snapshot. The snapshot is written
+   * to a temporary file first and then moved into place, so a reader never sees half a snapshot.
+   *
+   * @param source the source file.
+   * @param stamp the stamp of the source the graph was loaded from.
+   * @param graph the graph loaded from the source.
+   */
+  static void write(Path source, SourceStamp stamp, Graph<String> graph) {
+    Path snapshot = snapshotOf(source);
+    Path temporary = null;
+    try {
+      temporary = Files.createTempFile(snapshot.toAbsolutePath().getParent(), ".snapshot", ".tmp");
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putLong(stamp.size).putLong(stamp.modified).putLong(stamp.checksum());
+        out.write(header.array());
+        GraphSnapshot.write(graph, out);
+      }
+      Files.move(
+          temporary,
+          snapshot,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Snapshots are only a cache, so a read only directory or a full disk is not an error
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+          // The temporary file is left behind, which is harmless
+        }
+      }
+    }
+  }
+}
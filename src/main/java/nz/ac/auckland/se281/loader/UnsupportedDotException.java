@@ -0,0 +1,19 @@
+package nz.ac.auckland.se281.loader;
+
+/**
+ * Thrown by the streaming loader when a file uses a DOT feature it does not handle, so the file
+ * should be loaded by the full parser instead.
+ */
+class UnsupportedDotException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * creates the exception.
+   *
+   * @param message what the streaming loader could not handle.
+   */
+  UnsupportedDotException(String message) {
+    super(message);
+  }
+}
@@ -2,6 +2,24 @@ package nz.ac.auckland.se281;
 
 import static nz.ac.auckland.se281.Command.*;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import nz.ac.auckland.se281.datastructures.Edge;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.loader.GraphCache;
+import nz.ac.auckland.se281.loader.GraphLoader;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -318,6 +336,21 @@ public class MainTest {
       assertContains("[1, 2, 3, 4]");
     }
 
+    @Test
+    public void TY_C_same_equivalence_class() throws Exception {
+      runCommands(OPEN_FILE, "c.txt", SAME_EQUIVALENCE_CLASS, "1 3", SAME_EQUIVALENCE_CLASS, "0 2");
+      assertContains("Successfully opened graph from file c.txt");
+      assertContains("Verticies 1 and 3 are in the same equivalence class");
+      assertContains("Verticies 0 and 2 are NOT in the same equivalence class");
+    }
+
+    @Test
+    public void TY_A_same_equivalence_class() throws Exception {
+      runCommands(OPEN_FILE, "a.txt", SAME_EQUIVALENCE_CLASS, "0 1");
+      assertContains("Successfully opened graph from file a.txt");
+      assertContains("The graph is NOT an equivalence relation");
+    }
+
     @Test
     public void TY_01_G_iterative_BFS() throws Exception {
       runCommands(OPEN_FILE, "g.txt", GRAPH_SEARCH_IBFS);
@@ -332,6 +365,20 @@ public class MainTest {
       assertContains("[1, 3, 5, 7, 6, 2, 4, 10, 8, 9, 11, 12]");
     }
 
+    @Test
+    public void TY_05_G_parallel_BFS() throws Exception {
+      runCommands(OPEN_FILE, "g.txt", GRAPH_SEARCH_PBFS);
+      assertContains("Successfully opened graph from file g.txt");
+      assertContains("[1, 3, 5, 6, 9, 11, 7, 2, 12, 4, 8, 10]");
+    }
+
+    @Test
+    public void TY_06_G_gzip_BFS() throws Exception {
+      runCommands(OPEN_FILE, "g.txt.gz", GRAPH_SEARCH_IBFS);
+      assertContains("Successfully opened graph from file g.txt.gz");
+      assertContains("[1, 3, 5, 6, 9, 11, 7, 2, 12, 4, 8, 10]");
+    }
+
     @Test
     public void TY_03_G_recursive_BFS() throws Exception {
       runCommands(OPEN_FILE, "g.txt", GRAPH_SEARCH_RBFS);
@@ -365,6 +412,15 @@ public class MainTest {
               + " 14]");
     }
 
+    @Test
+    public void TY_05_H_parallel_BFS() throws Exception {
+      runCommands(OPEN_FILE, "h.txt", GRAPH_SEARCH_PBFS);
+      assertContains("Successfully opened graph from file h.txt");
+      assertContains(
+          "[0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23,"
+              + " 24]");
+    }
+
     @Test
     public void TY_03_H_recursive_BFS() throws Exception {
       runCommands(OPEN_FILE, "h.txt", GRAPH_SEARCH_RBFS);
@@ -392,6 +448,410 @@ public class MainTest {
       assertDoesNotContain("[0, 10, 12, 100, 2, 20]");
     }
 
+    // The roots are the same every time they are asked for
+    @Test
+    public void TY_06_I_roots_repeated() throws Exception {
+      runCommands(
+          OPEN_FILE, "i.txt", LIST_ROOT_VERTICIES, GRAPH_SEARCH_IBFS, LIST_ROOT_VERTICIES);
+      assertContains("Successfully opened graph from file i.txt");
+      assertContains("[0, 2, 10, 12, 20, 100]");
+      assertDoesNotContain("[0, 2, 10, 12, 20, 100, 0");
+    }
+
+    // Attributes are not read by the streaming loader, so the file is loaded by the DOT parser
+    @Test
+    public void TY_01_J_parser_fallback() throws Exception {
+      runCommands(OPEN_FILE, "j.txt", LIST_ROOT_VERTICIES, CHECK_TRANSITIVITY);
+      assertContains("Successfully opened graph from file j.txt");
+      assertContains("[1, 4]");
+      assertContains("The graph is transitive");
+    }
+
+    // Reopening a file hands back the cached graph
+    @Test
+    public void TY_07_I_cache_stats() throws Exception {
+      runCommands(
+          OPEN_FILE, "i.txt", OPEN_FILE, "g.txt", OPEN_FILE, "i.txt", LIST_ROOT_VERTICIES,
+          CACHE_STATS);
+      assertContains("[0, 2, 10, 12, 20, 100]");
+      assertContains("Graph cache: 1 hits, 2 misses, 0 evictions, 2 graphs cached");
+    }
+
+    // Small files are loaded before the prompt returns, so the load is already complete
+    @Test
+    public void TY_08_I_load_status() throws Exception {
+      runCommands(OPEN_FILE, "i.txt", LOAD_STATUS);
+      assertContains("Successfully opened graph from file i.txt");
+      assertContains("Loaded i.txt: ");
+      assertContains(" edges ingested");
+    }
+
+    // m.txt labels its verticies a and b, which are sorted as strings since they are not numbers
+    @Test
+    public void TY_01_M_non_numeric_labels() throws Exception {
+      runCommands(
+          OPEN_FILE,
+          "m.txt",
+          CHECK_REFLEXIVITY,
+          CHECK_SYMMETRY,
+          LIST_VERTICIES_EDGES,
+          GRAPH_SEARCH_IBFS);
+      assertContains("Successfully opened graph from file m.txt");
+      assertContains("The graph is reflexive");
+      assertContains("The graph is symmetric");
+      assertContains("\ta -> b");
+      assertContains("[a, b]");
+    }
+
+    // k.edges is an edge list with a weight column, which is not part of the graph
+    @Test
+    public void TY_01_K_edge_list() throws Exception {
+      runCommands(OPEN_FILE, "k.edges", LIST_VERTICIES_EDGES, LIST_ROOT_VERTICIES);
+      assertContains("Successfully opened graph from file k.edges");
+      assertContains("\t3 -> 1");
+      assertContains("\t4 -> 4");
+      assertContains("[4, 5]");
+      assertDoesNotContain("0.5");
+    }
+
+    // n.edges is an edge list whose labels are not all numbers, numbers are sorted first
+    @Test
+    public void TY_01_N_non_numeric_edge_list() throws Exception {
+      runCommands(OPEN_FILE, "n.edges", LIST_VERTICIES_EDGES, LIST_ROOT_VERTICIES, GRAPH_SEARCH_IBFS);
+      assertContains("Successfully opened graph from file n.edges");
+      assertContains("\t1 -> w");
+      assertContains("\tz -> x");
+      assertContains("[1]");
+      assertContains("[1, w, x, y, z]");
+    }
+
+    // l.adj is an adjacency list, recognised by its extension
+    @Test
+    public void TY_02_L_adjacency_list_IBFS() throws Exception {
+      runCommands(OPEN_FILE, "l.adj", LIST_ROOT_VERTICIES, GRAPH_SEARCH_IBFS);
+      assertContains("Successfully opened graph from file l.adj");
+      assertContains("[4]");
+      assertContains("[4, 1, 2, 3]");
+    }
+
+    // The file is not changed while it is watched, so the graph is the one that was opened
+    @Test
+    public void TY_09_I_watch_file() throws Exception {
+      runCommands(
+          OPEN_FILE, "i.txt", WATCH_FILE, WATCH_FILE, LIST_ROOT_VERTICIES, UNWATCH_FILE,
+          UNWATCH_FILE);
+      assertContains("Watching file i.txt for appended edges");
+      assertContains("Already watching file i.txt");
+      assertContains("[0, 2, 10, 12, 20, 100]");
+      assertContains("Stopped watching file i.txt, after 0 appends and 0 full reloads");
+      assertContains("Error: file i.txt is not being watched");
+    }
+
+    // The script runs without prompts, and is followed by an interactive run of the same commands
+    @Test
+    public void TY_10_I_batch_script() throws Exception {
+      final String script = "open-file i.txt" + NEW_LINE + "list-root-verticies";
+      Main.runBatch(new BufferedReader(new StringReader(script)), System.out, System.out);
+      assertContains("Successfully opened graph from file i.txt");
+      assertContains("[0, 2, 10, 12, 20, 100]");
+      assertContains(" ms\tlist-root-verticies");
+      assertContains("Ran 2 commands in ");
+      assertDoesNotContain("graph-calculator> ");
+      assertDoesNotContain("[no args]");
+
+      runCommands(OPEN_FILE, "i.txt", LIST_ROOT_VERTICIES);
+      assertContains("graph-calculator> ");
+    }
+
+    // The read-only commands run at the same time, but their output is in the order of the script
+    @Test
+    public void TY_11_I_batch_read_only_commands() throws Exception {
+      final String script =
+          String.join(
+              NEW_LINE,
+              "open-file i.txt",
+              "list-root-verticies",
+              "graph-search-ibfs",
+              "check-symmetry",
+              "open-file a.txt",
+              "list-root-verticies");
+      Main.runBatch(new BufferedReader(new StringReader(script)), System.out, System.out);
+      assertContains(
+          "[0, 2, 10, 12, 20, 100]"
+              + NEW_LINE
+              + "[0, 1, 2, 3, 10, 11, 12, 13, 20, 21, 100, 101]"
+              + NEW_LINE
+              + "The graph is NOT symmetric"
+              + NEW_LINE
+              + "Successfully opened graph from file a.txt"
+              + NEW_LINE
+              + "[0]");
+      assertContains("Ran 6 commands in ");
+
+      runCommands(OPEN_FILE, "i.txt", CHECK_SYMMETRY);
+      assertContains("The graph is NOT symmetric");
+    }
+
+    // Two clients open the same file on the server, and the second gets the graph of the first
+    @Test
+    public void TY_12_I_server_sessions() throws Exception {
+      try (GraphServer server = new GraphServer(GraphServer.parseAddress("0"))) {
+        final Thread serving =
+            new Thread(
+                () -> {
+                  try {
+                    server.serve();
+                  } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                  }
+                });
+        serving.setDaemon(true);
+        serving.start();
+
+        final String session =
+            String.join(NEW_LINE, "open-file i.txt", "list-root-verticies", "cache-stats", "exit");
+        for (int i = 0; i < 2; i++) {
+          try (Socket client = new Socket()) {
+            client.connect(server.getAddress());
+            client.getOutputStream().write((session + NEW_LINE).getBytes(StandardCharsets.UTF_8));
+            System.out.print(new String(client.getInputStream().readAllBytes()));
+          }
+        }
+        assertContains("graph-calculator> [0, 2, 10, 12, 20, 100]");
+        assertContains("Graph cache: 1 hits, 1 misses");
+        assertContains("You closed the terminal. Goodbye.");
+      }
+
+      runCommands(OPEN_FILE, "i.txt", CACHE_STATS);
+      assertContains("Graph cache: 0 hits, 1 misses");
+    }
+
+    // Both graphs stay open, so switching between them does not load either again
+    @Test
+    public void TY_13_I_workspace() throws Exception {
+      runCommands(
+          OPEN_FILE,
+          "i.txt",
+          new String[] {
+            "@first open-file a.txt",
+            "list-root-verticies",
+            "@i.txt list-root-verticies",
+            "use-graph i.txt",
+            "list-graphs",
+            "close-graph first",
+            "@first info",
+            "use-graph first"
+          },
+          LIST_ROOT_VERTICIES,
+          CACHE_STATS);
+      assertContains("Successfully opened graph from file a.txt");
+      assertContains("[0]" + NEW_LINE);
+      assertContains("Using graph i.txt");
+      assertContains("* i.txt: file i.txt, 12 verticies, ");
+      assertContains("  first: file a.txt, ");
+      assertContains("Closed graph first");
+      assertContains("Error: no graph named first is open");
+      assertContains("[0, 2, 10, 12, 20, 100]" + NEW_LINE + "graph-calculator> Graph cache: 0 hits, 2");
+    }
+
+    // i.txt does not fit in the budget on its own, so it is not cached and a.txt stays cached
+    @Test
+    public void TY_14_I_cache_budget() throws Exception {
+      final String session =
+          String.join(
+              NEW_LINE, "open-file a.txt", "open-file i.txt", "open-file a.txt", "cache-stats");
+      new Main(new Scanner(session + NEW_LINE + "exit"), System.out, new GraphCache(1000)).start();
+      assertContains("Successfully opened graph from file i.txt");
+      assertContains("Graph cache: 1 hits, 2 misses, 0 evictions, 1 graphs cached");
+
+      runCommands(OPEN_FILE, "i.txt", CACHE_STATS);
+      assertContains("Graph cache: 0 hits, 1 misses");
+    }
+
+    // Only files in the testcases folder are opened, and the server only listens on loopback
+    @Test
+    public void TY_15_I_outside_testcases() throws Exception {
+      for (final String address : new String[] {"0.0.0.0:7281", "localhost:7281"}) {
+        try {
+          System.out.println("Listening on " + GraphServer.parseAddress(address));
+        } catch (final IllegalArgumentException e) {
+          System.out.println(e.getMessage());
+        }
+      }
+      assertContains("not a loopback address: 0.0.0.0:7281");
+      assertContains("Listening on localhost/127.0.0.1:7281");
+
+      runCommands(
+          OPEN_FILE, "../pom.xml", OPEN_FILE, "/etc/hostname", OPEN_FILE, "../testcases/i.txt");
+      assertContains("Error: file '../pom.xml' not found in `testcases` folder");
+      assertContains("Error: file '/etc/hostname' not found in `testcases` folder");
+      assertContains("Successfully opened graph from file ../testcases/i.txt");
+    }
+
+    // An idle graph is released by the workspace and the cache alike, and opened again when used
+    @Test
+    public void TY_16_I_workspace_release() throws Exception {
+      final List<Reference<?>> held = new ArrayList<>();
+      final GraphCache graphs =
+          new GraphCache(
+              new GraphCache().getMaxBytes(),
+              graph -> {
+                final Reference<Graph<String>> reference = new SoftReference<>(graph);
+                held.add(reference);
+                return reference;
+              });
+      final GraphWorkspace workspace =
+          new GraphWorkspace(
+              filename -> new GraphCalculator(filename, graphs),
+              calculator -> {
+                final Reference<GraphCalculator> reference = new SoftReference<>(calculator);
+                held.add(reference);
+                return reference;
+              });
+      workspace.put("first", "a.txt", new GraphCalculator("a.txt", graphs));
+      workspace.put("i.txt", "i.txt", new GraphCalculator("i.txt", graphs));
+
+      // Release every graph as running short of memory would, only the current graph is still held
+      held.forEach(Reference::clear);
+      System.out.println("first is held: " + (workspace.peek("first") != null));
+      System.out.println("i.txt is held: " + (workspace.peek("i.txt") != null));
+      workspace.get("first").printRoots();
+      System.out.println("Misses: " + graphs.getMisses());
+      assertContains("first is held: false");
+      assertContains("i.txt is held: true");
+      assertContains("[0]");
+      assertContains("Misses: 3");
+
+      runCommands(OPEN_FILE, "a.txt");
+      assertContains("Successfully opened graph from file a.txt");
+    }
+
+    // Names holding the characters of a replacement pattern are printed as they are
+    @Test
+    public void TY_17_I_message_arguments() throws Exception {
+      Main.runBatch(
+          new BufferedReader(new StringReader("open-file no$1such\\.txt")), System.out, System.out);
+      assertContains("Error: file 'no$1such\\.txt' not found in `testcases` folder");
+
+      runCommands(OPEN_FILE, "$0.txt");
+      assertContains("Error: file '$0.txt' not found in `testcases` folder");
+    }
+
+    // Levels wide enough to be expanded in parallel still give the order of the iterative search
+    @Test
+    public void TY_18_I_parallel_BFS_levels() throws Exception {
+      final Random random = new Random(281);
+      final Set<String> verticies = new HashSet<>();
+      final Set<Edge<String>> edges = new HashSet<>();
+      for (int v = 0; v < 12000; v++) {
+        verticies.add(String.valueOf(v));
+      }
+      // Two roots, each reaching a thousand verticies whose own edges make levels of about ten
+      // thousand edges, far past the parallel threshold, with many verticies reached twice
+      for (int v = 1; v < 1000; v++) {
+        edges.add(new Edge<>("0", String.valueOf(v)));
+        edges.add(new Edge<>("11999", String.valueOf(12000 - v)));
+      }
+      for (int v = 1; v < 11999; v++) {
+        for (int e = 0; e < 10; e++) {
+          edges.add(new Edge<>(String.valueOf(v), String.valueOf(1 + random.nextInt(11998))));
+        }
+      }
+      final Graph<String> graph = new Graph<>(verticies, edges);
+
+      final List<String> visited = new ArrayList<>();
+      graph.parallelBreadthFirstSearch(visited::add);
+      final List<String> iterative = graph.iterativeBreadthFirstSearch();
+      System.out.println("Searched every vertex: " + new HashSet<>(iterative).equals(verticies));
+      System.out.println("Parallel order: " + graph.parallelBreadthFirstSearch().equals(iterative));
+      System.out.println("Visited order: " + visited.equals(iterative));
+      assertContains("Searched every vertex: true");
+      assertContains("Parallel order: true");
+      assertContains("Visited order: true");
+
+      runCommands(OPEN_FILE, "i.txt", GRAPH_SEARCH_PBFS);
+      assertContains("[0, 1, 2, 3, 10, 11, 12, 13, 20, 21, 100, 101]");
+    }
+
+    // With no room for the bit matrix, transitivity is checked on the sorted rows of the edges
+    @Test
+    public void TY_19_I_sparse_transitivity() throws Exception {
+      final Set<String> verticies = new HashSet<>();
+      final Set<Edge<String>> edges = new HashSet<>();
+      // Groups of verticies that are each totally ordered, so every two step path is an edge
+      for (int v = 0; v < 500; v++) {
+        verticies.add(String.valueOf(v));
+        for (int w = v + 1; w < (v / 50 + 1) * 50; w++) {
+          edges.add(new Edge<>(String.valueOf(v), String.valueOf(w)));
+        }
+      }
+      final Set<Edge<String>> broken = new HashSet<>(edges);
+      broken.remove(new Edge<>("250", "252"));
+
+      System.setProperty("graphcalc.transitivity.denseLimitBytes", "0");
+      try {
+        System.out.println("Sparse transitive: " + new Graph<>(verticies, edges).isTransitive());
+        System.out.println("Sparse broken: " + new Graph<>(verticies, broken).isTransitive());
+      } finally {
+        System.clearProperty("graphcalc.transitivity.denseLimitBytes");
+      }
+      System.out.println("Dense broken: " + new Graph<>(verticies, broken).isTransitive());
+      assertContains("Sparse transitive: true");
+      assertContains("Sparse broken: false");
+      assertContains("Dense broken: false");
+
+      runCommands(OPEN_FILE, "c.txt", CHECK_TRANSITIVITY);
+      assertContains("The graph is transitive");
+    }
+
+    // Splitting a file into chunks in the middle of its lines gives the graph of a single pass
+    @Test
+    public void TY_20_I_chunked_parse() throws Exception {
+      final Random random = new Random(15);
+      final StringBuilder plain = new StringBuilder("digraph chunks {" + NEW_LINE);
+      final StringBuilder split = new StringBuilder("digraph chunks {" + NEW_LINE);
+      for (int line = 0; line < 2000; line++) {
+        final String statement =
+            random.nextInt(1000) + " -> " + random.nextInt(1000) + " -> " + random.nextInt(1000);
+        plain.append(statement).append(line % 7 == 0 ? "; // chain" : ";").append(NEW_LINE);
+        // Every hundredth statement of the other file spans two lines, so its chunks do not parse
+        split.append(line % 100 == 0 ? statement.replaceFirst(" -> ", " ->" + NEW_LINE) : statement);
+        split.append(NEW_LINE);
+      }
+      plain.append(random.nextInt(1000)).append(NEW_LINE).append("}").append(NEW_LINE);
+      split.append("}").append(NEW_LINE);
+
+      for (final StringBuilder dot : List.of(plain, split)) {
+        final Path file = Files.createTempFile("chunks", ".txt");
+        try {
+          Files.writeString(file, dot);
+          final Graph<String> whole = GraphLoader.load(file);
+          final Graph<String> chunked;
+          System.setProperty("graphcalc.parallelParse.minBytes", "0");
+          System.setProperty("graphcalc.parallelParse.chunkBytes", "64");
+          try {
+            chunked = GraphLoader.load(file);
+          } finally {
+            System.clearProperty("graphcalc.parallelParse.minBytes");
+            System.clearProperty("graphcalc.parallelParse.chunkBytes");
+          }
+          System.out.println(
+              "Same graph: "
+                  + (whole.getVerticies().equals(chunked.getVerticies())
+                      && whole.getEdges().equals(chunked.getEdges())
+                      && whole.iterativeBreadthFirstSearch()
+                          .equals(chunked.iterativeBreadthFirstSearch())));
+        } finally {
+          Files.delete(file);
+        }
+      }
+      assertDoesNotContain("Same graph: false");
+      assertContains("Same graph: true");
+
+      runCommands(OPEN_FILE, "i.txt", LIST_ROOT_VERTICIES);
+      assertContains("[0, 2, 10, 12, 20, 100]");
+    }
+
     // dfs and bfs of i.txt (or whatever you named the file I have given you)
     @Test
     public void TY_02_I_IBFS() throws Exception {